@@ -0,0 +1,191 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Segmented AES-256-GCM over streams, in the style of STREAM / Tink's streaming AEAD.
+ * <p>
+ * Layout: a {@value #HEADER_LENGTH}-byte header, version (1) | segment size (4, big-endian) | salt (16) | nonce
+ * prefix (7), then the plaintext in segments of {@code segmentSize} bytes (the last one shorter), each encrypted on
+ * its own and followed by its 16-byte tag. Segment {@code i} uses the nonce {@code prefix || i (4) || last (1)} and
+ * the header as associated data, under a key derived from the caller's key and the salt with HKDF-SHA256. Segments
+ * therefore cannot be reordered, dropped or truncated at a boundary without failing authentication, and a key can
+ * be reused across streams without nonce collisions.
+ * <p>
+ * Decryption holds one segment at a time and encryption a bounded window of them, so memory is constant whatever
+ * the stream length, and a tampered segment is reported as soon as it is read instead of after the whole stream.
+ * Segments are encrypted in parallel on a {@link ForkJoinPool} with the JDK's own AES-GCM, which uses the AES-NI and
+ * carry-less multiply intrinsics; BouncyCastle's pure-Java GCM is several times slower per core.
+ */
+public final class AesGcm {
+
+    public static final int KEY_SIZE = 256;
+    public static final int TAG_LENGTH = 128; // bits
+    public static final int MIN_SEGMENT_SIZE = 64 * 1024;
+    public static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+
+    static final int VERSION = 1;
+    static final int SALT_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int HEADER_LENGTH = 1 + Integer.BYTES + SALT_LENGTH + NONCE_PREFIX_LENGTH;
+    static final int TAG_BYTES = TAG_LENGTH / 8;
+
+    private static final String AES_GCM_CIPHER = "AES/GCM/NoPadding";
+    private static final String JDK_PROVIDER = "SunJCE";
+    private static final byte[] KDF_INFO = "pqcstego aes-gcm segments v1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final EnginePool<Cipher> CIPHERS = new EnginePool<>(
+            () -> Cipher.getInstance(AES_GCM_CIPHER, JDK_PROVIDER));
+    private static final EnginePool<KeyGenerator> KEY_GENERATORS = new EnginePool<>(() -> {
+        var keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(KEY_SIZE, CryptoPrimitives.secureRandom());
+        return keyGenerator;
+    });
+
+    private AesGcm() {
+    }
+
+    public static SecretKey generateKey() throws GeneralSecurityException {
+        return KEY_GENERATORS.apply(KeyGenerator::generateKey);
+    }
+
+    /**
+     * @return the number of bytes {@link #encrypt(InputStream, SecretKey)} produces for {@code plaintextLength} bytes
+     */
+    public static long encryptedLength(long plaintextLength) {
+        return encryptedLength(plaintextLength, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public static long encryptedLength(long plaintextLength, int segmentSize) {
+        // An empty plaintext still gets one (empty) final segment
+        long segments = Math.max(1, Math.ceilDiv(plaintextLength, segmentSize));
+        return HEADER_LENGTH + plaintextLength + segments * TAG_BYTES;
+    }
+
+    /**
+     * Inverse of {@link #encryptedLength(long)}.
+     *
+     * @return the longest plaintext that encrypts to at most {@code encryptedLength} bytes, or {@code -1} if not even
+     * an empty one does
+     */
+    public static long maxPlaintextLength(long encryptedLength) {
+        return maxPlaintextLength(encryptedLength, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public static long maxPlaintextLength(long encryptedLength, int segmentSize) {
+        long available = encryptedLength - HEADER_LENGTH;
+        if (available < TAG_BYTES) {
+            return -1;
+        }
+        // Whole segments, then whatever of a last partial segment fits next to its tag
+        long segments = available / (segmentSize + TAG_BYTES);
+        long rest = available % (segmentSize + TAG_BYTES);
+        return segments * segmentSize + Math.max(0, rest - TAG_BYTES);
+    }
+
+    public static InputStream encrypt(InputStream data, SecretKey secretKey) throws GeneralSecurityException {
+        return encrypt(data, secretKey, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Encrypts on {@code pool}, with up to two segments per pool thread read ahead for this stream.
+     */
+    public static InputStream encrypt(InputStream data, SecretKey secretKey, int segmentSize, ForkJoinPool pool)
+            throws GeneralSecurityException {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be between " + MIN_SEGMENT_SIZE + " and "
+                    + MAX_SEGMENT_SIZE + " bytes, got " + segmentSize);
+        }
+
+        var random = CryptoPrimitives.secureRandom();
+        var salt = new byte[SALT_LENGTH];
+        var noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        random.nextBytes(salt);
+        random.nextBytes(noncePrefix);
+
+        var header = ByteBuffer.allocate(HEADER_LENGTH)
+                .put((byte) VERSION)
+                .putInt(segmentSize)
+                .put(salt)
+                .put(noncePrefix)
+                .array();
+        var segments = new Segments(deriveKey(secretKey, salt), noncePrefix, header);
+        return new SegmentEncryptingInputStream(data, segmentSize, segments, pool, 2 * pool.getParallelism());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the stream does not start with a valid header
+     */
+    public static InputStream decrypt(InputStream encryptedData, SecretKey secretKey)
+            throws IOException, GeneralSecurityException {
+        var header = encryptedData.readNBytes(HEADER_LENGTH);
+        if (header.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Invalid encrypted stream: missing header.");
+        }
+
+        var buffer = ByteBuffer.wrap(header);
+        int version = buffer.get() & 0xFF;
+        int segmentSize = buffer.getInt();
+        if (version != VERSION || segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Invalid encrypted stream: unsupported header.");
+        }
+        var salt = new byte[SALT_LENGTH];
+        var noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        buffer.get(salt).get(noncePrefix);
+
+        var segments = new Segments(deriveKey(secretKey, salt), noncePrefix, header);
+        return new SegmentDecryptingInputStream(encryptedData, segmentSize, segments);
+    }
+
+    private static SecretKey deriveKey(SecretKey secretKey, byte[] salt) {
+        var generator = new HKDFBytesGenerator(new SHA256Digest());
+        generator.init(new HKDFParameters(secretKey.getEncoded(), salt, KDF_INFO));
+        var derived = new byte[KEY_SIZE / 8];
+        generator.generateBytes(derived, 0, derived.length);
+        return new SecretKeySpec(derived, "AES");
+    }
+
+    /**
+     * Per-stream state shared by both directions: the derived key, the nonce prefix and the header bound to every
+     * segment.
+     */
+    record Segments(SecretKey key, byte[] noncePrefix, byte[] header) {
+
+        /**
+         * Encrypts or decrypts ({@code mode}) segment {@code index} in one go.
+         */
+        byte[] process(int mode, long index, boolean last, byte[] segment, int length) throws GeneralSecurityException {
+            if (index > 0xFFFFFFFFL) {
+                throw new GeneralSecurityException("Stream exceeds 2^32 segments");
+            }
+            var nonce = ByteBuffer.allocate(NONCE_PREFIX_LENGTH + Integer.BYTES + 1)
+                    .put(noncePrefix)
+                    .putInt((int) index)
+                    .put((byte) (last ? 1 : 0))
+                    .array();
+            var parameters = new GCMParameterSpec(TAG_LENGTH, nonce);
+            return CIPHERS.apply(cipher -> {
+                cipher.init(mode, key, parameters);
+                cipher.updateAAD(header);
+                return cipher.doFinal(segment, 0, length);
+            });
+        }
+
+    }
+
+}
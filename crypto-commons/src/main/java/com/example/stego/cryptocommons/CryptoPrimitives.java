@@ -0,0 +1,56 @@
+package com.example.stego.cryptocommons;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.DrbgParameters;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Process-wide randomness and start-up warm-up for the rest of the library.
+ */
+public final class CryptoPrimitives {
+
+    // DRBG instances are thread-safe, and seeding one once avoids blocking on the entropy pool per call
+    private static final SecureRandom RANDOM = createRandom();
+
+    private CryptoPrimitives() {
+    }
+
+    public static SecureRandom secureRandom() {
+        return RANDOM;
+    }
+
+    /**
+     * Runs every primitive once: loads and initializes the Bouncy Castle PQC classes (whose first use takes hundreds
+     * of milliseconds), gets the hot paths through the JIT's first tiers and leaves an engine of each kind pooled.
+     */
+    public static void warmUp() throws GeneralSecurityException, IOException {
+        var kemKeyPair = PqcKeys.generateKemKeyPair();
+        var dsaKeyPair = PqcKeys.generateDsaKeyPair();
+        PqcKeys.decodeKemPublicKey(PqcKeys.encode(kemKeyPair.getPublic()));
+        PqcKeys.decodeDsaPublicKey(dsaKeyPair.getPublic().getEncoded());
+
+        var secret = new byte[1024];
+        RANDOM.nextBytes(secret);
+        try (var sealed = HybridPayload.seal(new ByteArrayInputStream(secret), secret.length,
+                kemKeyPair.getPublic(), dsaKeyPair.getPrivate());
+             var opened = HybridPayload.open(sealed.stream().readAllBytes(), kemKeyPair.getPrivate())) {
+            opened.readAllBytes();
+        }
+
+        var aesKey = AesGcm.generateKey();
+        AesGcm.decrypt(AesGcm.encrypt(new ByteArrayInputStream(secret), aesKey), aesKey).readAllBytes();
+    }
+
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.stego.cryptocommons;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Idle JCA engines ({@code Cipher}, {@code KeyFactory}, ...) kept for reuse, so a call only pays for the provider
+ * lookup and setup when every pooled engine is busy.
+ * <p>
+ * A pool rather than a {@code ThreadLocal}: the services run requests on virtual threads, which would each start
+ * with an empty cache. Engines are re-initialized by every use, which resets whatever state the previous one left.
+ */
+final class EnginePool<T> {
+
+    private static final int MAX_IDLE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Factory<T> factory;
+
+    EnginePool(Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    <R> R apply(Use<T, R> use) throws GeneralSecurityException {
+        var engine = idle.poll();
+        if (engine == null) {
+            engine = factory.create();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        try {
+            return use.apply(engine);
+        } finally {
+            release(engine);
+        }
+    }
+
+    private void release(T engine) {
+        if (idleCount.incrementAndGet() <= MAX_IDLE) {
+            idle.offer(engine);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    @FunctionalInterface
+    interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    @FunctionalInterface
+    interface Use<T, R> {
+        R apply(T engine) throws GeneralSecurityException;
+    }
+
+}
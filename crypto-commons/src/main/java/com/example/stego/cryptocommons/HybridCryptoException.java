@@ -0,0 +1,28 @@
+package com.example.stego.cryptocommons;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * A hybrid payload that cannot be opened. The message is the {@link Reason} name, which is what a failed job
+ * reports to the user.
+ */
+public class HybridCryptoException extends GeneralSecurityException {
+
+    private final Reason reason;
+
+    public HybridCryptoException(Reason reason, Throwable cause) {
+        super(reason.name(), cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public enum Reason {
+        MALFORMED_PAYLOAD,
+        SIGNATURE_INVALID,
+        DECRYPTION_FAILED
+    }
+
+}
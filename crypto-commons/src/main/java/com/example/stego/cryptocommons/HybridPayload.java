@@ -0,0 +1,213 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.pqc.jcajce.interfaces.DilithiumKey;
+import org.bouncycastle.pqc.jcajce.interfaces.DilithiumPrivateKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The payload embedded into a carrier: the secret encrypted under a one-time AES-256-GCM key, that key encapsulated
+ * to the recipient with Kyber, and the ciphertext signed with the sender's Dilithium key over its SHAKE-256 pre-hash
+ * (see {@link PrehashedSignatures}), laid out as a {@link PayloadContainer}.
+ */
+public final class HybridPayload {
+
+    // Fixed per parameter set, but different between Dilithium revisions, so measured once per JVM
+    private static final Map<String, Integer> SIGNATURE_LENGTHS = new ConcurrentHashMap<>();
+    // Section lengths of payloads sealed with keys of PqcKeys' parameter sets, measured the same way
+    private static volatile PayloadContainer.Header referenceSections;
+
+    static {
+        PqcProviders.install();
+    }
+
+    private HybridPayload() {
+    }
+
+    /**
+     * Seals {@code secret} as it is read. Nothing is buffered here; the returned stream encrypts and signs on demand.
+     */
+    public static SealedPayload seal(
+            InputStream secret,
+            long secretLength,
+            PublicKey recipientKemKey,
+            PrivateKey senderDsaKey
+    ) throws GeneralSecurityException {
+
+        if (!(senderDsaKey instanceof DilithiumPrivateKey dilithiumKey)) {
+            throw new InvalidKeyException("Sender key is not a Dilithium private key");
+        }
+        var senderPublicKey = dilithiumKey.getPublicKey().getEncoded();
+        var aesKey = KyberKem.encapsulate(recipientKemKey);
+        var encapsulation = aesKey.getEncapsulation();
+        int signatureLength = signatureLength(dilithiumKey);
+
+        var header = containerHeader(senderPublicKey.length, encapsulation.length, signatureLength, secretLength);
+        var prefix = ByteBuffer.allocate((int) header.encryptedDataOffset())
+                .put(header.encode())
+                .put(senderPublicKey)
+                .put(encapsulation)
+                .array();
+
+        var stream = new SequenceInputStream(
+                new ByteArrayInputStream(prefix),
+                new SigningInputStream(AesGcm.encrypt(secret, aesKey), dilithiumKey, signatureLength)
+        );
+        return new SealedPayload(stream, header.totalLength());
+    }
+
+    /**
+     * @return the length of the payload {@link #seal} produces for a {@code secretLength}-byte secret, with keys of the
+     * parameter sets {@link PqcKeys} generates
+     */
+    public static long sealedLength(long secretLength) throws GeneralSecurityException {
+        var sections = referenceSections();
+        return containerHeader(
+                sections.senderPublicKeyLength(), sections.encapsulationLength(), sections.signatureLength(), secretLength
+        ).totalLength();
+    }
+
+    /**
+     * Inverse of {@link #sealedLength(long)}.
+     *
+     * @return the longest secret whose sealed payload fits in {@code payloadLength} bytes, or a negative number if not
+     * even an empty one does
+     */
+    public static long maxSecretLength(long payloadLength) throws GeneralSecurityException {
+        // Everything but the encrypted data: the container header, the sender key, the encapsulation and the signature
+        long sectionsLength = referenceSections().totalLength();
+        return AesGcm.maxPlaintextLength(payloadLength - sectionsLength);
+    }
+
+    /**
+     * Verifies the signature, decapsulates the AES key and returns the decrypting stream over the secret.
+     *
+     * @throws HybridCryptoException if the payload is malformed, its signature does not verify or the key cannot be
+     *                               decapsulated with {@code recipientKemKey}
+     */
+    public static InputStream open(byte[] payload, PrivateKey recipientKemKey) throws GeneralSecurityException {
+        return open(ByteBuffer.wrap(payload), recipientKemKey);
+    }
+
+    /**
+     * {@link ByteBuffer} variant of {@link #open(byte[], PrivateKey)}; the payload is read in place, not copied.
+     */
+    public static InputStream open(ByteBuffer payload, PrivateKey recipientKemKey) throws GeneralSecurityException {
+        var container = PayloadContainer.wrap(payload);
+
+        try {
+            var senderKey = PqcKeys.decodeDsaPublicKey(bytes(container.senderPublicKey()));
+            var digest = PrehashedSignatures.newDigest();
+            PrehashedSignatures.absorb(digest, container.encryptedData());
+            var signature = bytes(container.signature());
+            if (!PrehashedSignatures.verify(senderKey, digest, signature, 0, signature.length)) {
+                throw new HybridCryptoException(HybridCryptoException.Reason.SIGNATURE_INVALID, null);
+            }
+        } catch (HybridCryptoException e) {
+            throw e;
+        } catch (GeneralSecurityException e) {
+            throw new HybridCryptoException(HybridCryptoException.Reason.SIGNATURE_INVALID, e);
+        }
+
+        try {
+            var aesKey = KyberKem.decapsulate(recipientKemKey, bytes(container.encapsulation()));
+            var plaintext = AesGcm.decrypt(container.encryptedDataStream(), aesKey);
+            return new DecryptingInputStream(plaintext);
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            throw new HybridCryptoException(HybridCryptoException.Reason.DECRYPTION_FAILED, e);
+        }
+    }
+
+    private static PayloadContainer.Header containerHeader(
+            int senderPublicKeyLength,
+            int encapsulationLength,
+            int signatureLength,
+            long secretLength
+    ) {
+        return PayloadContainer.Header.of(
+                senderPublicKeyLength, encapsulationLength, signatureLength, AesGcm.encryptedLength(secretLength)
+        );
+    }
+
+    // Measured on throwaway keys; concurrent first calls measure the same lengths
+    private static PayloadContainer.Header referenceSections() throws GeneralSecurityException {
+        var sections = referenceSections;
+        if (sections == null) {
+            var dsaKeys = PqcKeys.generateDsaKeyPair();
+            var encapsulation = KyberKem.encapsulate(PqcKeys.generateKemKeyPair().getPublic()).getEncapsulation();
+            sections = PayloadContainer.Header.of(
+                    dsaKeys.getPublic().getEncoded().length,
+                    encapsulation.length,
+                    signatureLength(dsaKeys.getPrivate()),
+                    0
+            );
+            referenceSections = sections;
+        }
+        return sections;
+    }
+
+    // The key and encapsulation APIs only take arrays; these sections are a few KB
+    private static byte[] bytes(ByteBuffer section) {
+        var bytes = new byte[section.remaining()];
+        section.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static int signatureLength(PrivateKey senderKey) throws GeneralSecurityException {
+        var parameterSet = ((DilithiumKey) senderKey).getParameterSpec().getName();
+        var known = SIGNATURE_LENGTHS.get(parameterSet);
+        if (known != null) {
+            return known;
+        }
+        int length = PrehashedSignatures.sign(senderKey, PrehashedSignatures.newDigest()).length;
+        SIGNATURE_LENGTHS.put(parameterSet, length);
+        return length;
+    }
+
+    /**
+     * A wrong recipient key decapsulates to a different key rather than failing, so the mismatch only shows as a GCM
+     * tag failure while reading; this reports it with the same reason as a failed decapsulation.
+     */
+    private static final class DecryptingInputStream extends FilterInputStream {
+
+        DecryptingInputStream(InputStream plaintext) {
+            super(plaintext);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw decryptionFailed(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw decryptionFailed(e);
+            }
+        }
+
+        private static IOException decryptionFailed(IOException e) {
+            var reason = HybridCryptoException.Reason.DECRYPTION_FAILED;
+            return new IOException(reason.name(), new HybridCryptoException(reason, e));
+        }
+
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bouncycastle.jcajce.spec.KEMExtractSpec;
+import org.bouncycastle.jcajce.spec.KEMGenerateSpec;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * Kyber key encapsulation of one-time AES keys.
+ */
+public final class KyberKem {
+
+    static {
+        PqcProviders.install();
+    }
+
+    // Re-initialized with the key for every encapsulation and decapsulation
+    private static final EnginePool<KeyGenerator> GENERATORS = new EnginePool<>(
+            () -> KeyGenerator.getInstance(PqcKeys.KEM_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME));
+
+    private KyberKem() {
+    }
+
+    /**
+     * @return a fresh AES-256 key together with its encapsulation to {@code recipientKey}
+     */
+    public static SecretKeyWithEncapsulation encapsulate(PublicKey recipientKey) throws GeneralSecurityException {
+        var spec = new KEMGenerateSpec(recipientKey, "AES", AesGcm.KEY_SIZE);
+        return GENERATORS.apply(generator -> {
+            generator.init(spec, CryptoPrimitives.secureRandom());
+            return (SecretKeyWithEncapsulation) generator.generateKey();
+        });
+    }
+
+    public static SecretKey decapsulate(PrivateKey recipientKey, byte[] encapsulation) throws GeneralSecurityException {
+        var spec = new KEMExtractSpec(recipientKey, encapsulation, "AES", AesGcm.KEY_SIZE);
+        return GENERATORS.apply(generator -> {
+            generator.init(spec);
+            return new SecretKeySpec(generator.generateKey().getEncoded(), "AES");
+        });
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.example.stego.cryptocommons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Codec for the hybrid payload container.
+ * <p>
+ * Layout: a fixed {@value #HEADER_LENGTH}-byte little-endian header, magic {@code "PQHP"} (4) | version (1) | sender
+ * DSA public key length (4) | encapsulation length (4) | signature length (4) | encrypted data length (8), followed
+ * by the sender DSA public key, the encapsulated key, the encrypted data and the signature.
+ * <p>
+ * The signature trails the data rather than preceding it as FR-B-4.3 lists the sections: it is only known once the
+ * last ciphertext byte has gone by, and trailing it lets a payload be embedded while the secret is still streaming in.
+ * <p>
+ * A wrapped container only parses its header: every section is a read-only slice of the caller's buffer, or a stream
+ * over one, so nothing proportional to the payload is allocated or copied. {@link #readHeader(InputStream)} decodes
+ * the header alone, e.g. from the first bytes extracted from a carrier, to learn the sections' lengths up front.
+ */
+public final class PayloadContainer {
+
+    public static final int HEADER_LENGTH = 25;
+    public static final int MAGIC = 0x50485150; // "PQHP" read little-endian
+    public static final int CURRENT_VERSION = 3;
+
+    private final Header header;
+    private final ByteBuffer payload;
+
+    private PayloadContainer(Header header, ByteBuffer payload) {
+        this.header = header;
+        this.payload = payload;
+    }
+
+    /**
+     * Wraps the container in {@code payload[position, limit)} without copying it; the buffer's position and limit are
+     * left untouched.
+     *
+     * @throws HybridCryptoException if the header is invalid or the sections do not exactly fill the buffer (which
+     *                               also bounds a wrapped container to 2 GiB; {@link #readHeader} has no such limit)
+     */
+    public static PayloadContainer wrap(ByteBuffer payload) throws HybridCryptoException {
+        var view = payload.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        if (view.remaining() < HEADER_LENGTH) {
+            throw malformed();
+        }
+        var header = Header.parse(view.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+        if (header.totalLength() != view.remaining()) {
+            throw malformed();
+        }
+        return new PayloadContainer(header, view);
+    }
+
+    /**
+     * Reads exactly the header from {@code input}, leaving it positioned at the sender's public key.
+     */
+    public static Header readHeader(InputStream input) throws IOException, HybridCryptoException {
+        var bytes = input.readNBytes(HEADER_LENGTH);
+        if (bytes.length < HEADER_LENGTH) {
+            throw malformed();
+        }
+        return Header.parse(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public Header header() {
+        return header;
+    }
+
+    public ByteBuffer senderPublicKey() {
+        return section(header.senderPublicKeyOffset(), header.senderPublicKeyLength());
+    }
+
+    public ByteBuffer encapsulation() {
+        return section(header.encapsulationOffset(), header.encapsulationLength());
+    }
+
+    public ByteBuffer encryptedData() {
+        return section(header.encryptedDataOffset(), (int) header.encryptedDataLength());
+    }
+
+    public InputStream encryptedDataStream() {
+        return new ByteBufferInputStream(encryptedData());
+    }
+
+    public ByteBuffer signature() {
+        return section(header.signatureOffset(), header.signatureLength());
+    }
+
+    private ByteBuffer section(long offset, int length) {
+        return payload.slice((int) offset, length);
+    }
+
+    private static HybridCryptoException malformed() {
+        return new HybridCryptoException(HybridCryptoException.Reason.MALFORMED_PAYLOAD, null);
+    }
+
+    public record Header(
+            int version,
+            int senderPublicKeyLength,
+            int encapsulationLength,
+            int signatureLength,
+            long encryptedDataLength
+    ) {
+
+        public static Header of(int senderPublicKeyLength, int encapsulationLength, int signatureLength, long encryptedDataLength) {
+            return new Header(CURRENT_VERSION, senderPublicKeyLength, encapsulationLength, signatureLength, encryptedDataLength);
+        }
+
+        /**
+         * Decodes the header at {@code buffer}'s position, which must be little-endian.
+         */
+        static Header parse(ByteBuffer buffer) throws HybridCryptoException {
+            if (buffer.getInt() != MAGIC) {
+                throw malformed();
+            }
+            var header = new Header(buffer.get() & 0xFF, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong());
+            if (header.version() != CURRENT_VERSION || header.senderPublicKeyLength() < 0 || header.encapsulationLength() < 0
+                    || header.signatureLength() < 0 || header.encryptedDataLength() < 0
+                    || header.encryptedDataLength() > Long.MAX_VALUE / 2) {
+                throw malformed();
+            }
+            return header;
+        }
+
+        public byte[] encode() {
+            return ByteBuffer.allocate(HEADER_LENGTH)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC)
+                    .put((byte) version)
+                    .putInt(senderPublicKeyLength)
+                    .putInt(encapsulationLength)
+                    .putInt(signatureLength)
+                    .putLong(encryptedDataLength)
+                    .array();
+        }
+
+        public long senderPublicKeyOffset() {
+            return HEADER_LENGTH;
+        }
+
+        public long encapsulationOffset() {
+            return senderPublicKeyOffset() + senderPublicKeyLength;
+        }
+
+        public long encryptedDataOffset() {
+            return encapsulationOffset() + encapsulationLength;
+        }
+
+        public long signatureOffset() {
+            return encryptedDataOffset() + encryptedDataLength;
+        }
+
+        public long totalLength() {
+            return signatureOffset() + signatureLength;
+        }
+
+    }
+
+    /**
+     * Reads a buffer from its position to its limit, advancing its position.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+    }
+
+}
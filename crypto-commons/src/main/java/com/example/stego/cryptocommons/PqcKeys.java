@@ -0,0 +1,107 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.bouncycastle.pqc.jcajce.spec.DilithiumParameterSpec;
+import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Generation and Base64 (de)serialization of the Kyber (KEM) and Dilithium (DSA) keys users hold.
+ * <p>
+ * Public keys travel as X.509 {@code SubjectPublicKeyInfo}, private keys as PKCS#8, both Base64-encoded, which is the
+ * form {@code /api/v1/keys/generate} hands out and the public key directory stores.
+ */
+public final class PqcKeys {
+
+    public static final String KEM_ALGORITHM = "Kyber";
+    public static final String DSA_ALGORITHM = "Dilithium";
+
+    static {
+        PqcProviders.install();
+    }
+
+    // Initialized once; generateKeyPair() can be called any number of times on each
+    private static final EnginePool<KeyPairGenerator> KEM_KEY_PAIR_GENERATORS = new EnginePool<>(() -> {
+        var generator = KeyPairGenerator.getInstance(KEM_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME);
+        generator.initialize(KyberParameterSpec.kyber1024, CryptoPrimitives.secureRandom());
+        return generator;
+    });
+    private static final EnginePool<KeyPairGenerator> DSA_KEY_PAIR_GENERATORS = new EnginePool<>(() -> {
+        var generator = KeyPairGenerator.getInstance(DSA_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME);
+        generator.initialize(DilithiumParameterSpec.dilithium5, CryptoPrimitives.secureRandom());
+        return generator;
+    });
+    private static final EnginePool<KeyFactory> KEM_KEY_FACTORIES = new EnginePool<>(
+            () -> KeyFactory.getInstance(KEM_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME));
+    private static final EnginePool<KeyFactory> DSA_KEY_FACTORIES = new EnginePool<>(
+            () -> KeyFactory.getInstance(DSA_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME));
+    private static final EnginePool<MessageDigest> FINGERPRINT_DIGESTS = new EnginePool<>(
+            () -> MessageDigest.getInstance("SHA-256"));
+
+    private PqcKeys() {
+    }
+
+    public static KeyPair generateKemKeyPair() throws GeneralSecurityException {
+        return KEM_KEY_PAIR_GENERATORS.apply(KeyPairGenerator::generateKeyPair);
+    }
+
+    public static KeyPair generateDsaKeyPair() throws GeneralSecurityException {
+        return DSA_KEY_PAIR_GENERATORS.apply(KeyPairGenerator::generateKeyPair);
+    }
+
+    public static PublicKey decodeKemPublicKey(String base64) throws GeneralSecurityException {
+        return decodeKemPublicKey(Base64.getDecoder().decode(base64));
+    }
+
+    public static PublicKey decodeKemPublicKey(byte[] encoded) throws GeneralSecurityException {
+        return decodePublicKey(KEM_KEY_FACTORIES, encoded);
+    }
+
+    public static PrivateKey decodeKemPrivateKey(String base64) throws GeneralSecurityException {
+        return decodePrivateKey(KEM_KEY_FACTORIES, base64);
+    }
+
+    public static PublicKey decodeDsaPublicKey(byte[] encoded) throws GeneralSecurityException {
+        return decodePublicKey(DSA_KEY_FACTORIES, encoded);
+    }
+
+    public static PrivateKey decodeDsaPrivateKey(String base64) throws GeneralSecurityException {
+        return decodePrivateKey(DSA_KEY_FACTORIES, base64);
+    }
+
+    public static String encode(Key key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+
+    /**
+     * @return the hex SHA-256 of an encoded key, which identifies it without holding on to the encoding
+     */
+    public static String fingerprint(byte[] encoded) throws GeneralSecurityException {
+        return HexFormat.of().formatHex(FINGERPRINT_DIGESTS.apply(digest -> digest.digest(encoded)));
+    }
+
+    private static PublicKey decodePublicKey(EnginePool<KeyFactory> factories, byte[] encoded)
+            throws GeneralSecurityException {
+        var spec = new X509EncodedKeySpec(encoded);
+        return factories.apply(factory -> factory.generatePublic(spec));
+    }
+
+    private static PrivateKey decodePrivateKey(EnginePool<KeyFactory> factories, String base64)
+            throws GeneralSecurityException {
+        var spec = new PKCS8EncodedKeySpec(Base64.getDecoder().decode(base64));
+        return factories.apply(factory -> factory.generatePrivate(spec));
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+
+import java.security.Security;
+
+/**
+ * Registers the Bouncy Castle providers, once per JVM, before any class of this library touches JCA.
+ */
+public final class PqcProviders {
+
+    private PqcProviders() {
+    }
+
+    public static synchronized void install() {
+        // Add the Bouncy Castle provider for traditional algorithms
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        // Add the Bouncy Castle PQC provider for post-quantum algorithms
+        if (Security.getProvider(BouncyCastlePQCProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastlePQCProvider());
+        }
+    }
+
+}
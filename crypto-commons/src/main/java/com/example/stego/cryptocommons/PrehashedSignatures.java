@@ -0,0 +1,97 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * Dilithium signatures over a SHAKE-256 pre-hash of the message, in the manner of HashML-DSA (FIPS 204, 5.4).
+ * <p>
+ * The message is absorbed into a {@link SHAKEDigest} as it streams by; only
+ * {@code M' = 0x01 || 0x00 || OID(SHAKE-256) || SHAKE-256(M, 512 bits)} is passed to the signature. Bouncy Castle's
+ * Dilithium {@link Signature} buffers the whole message until {@code sign()}/{@code verify()}, so without the
+ * pre-hash signing a multi-GB payload would hold all of it in memory.
+ */
+final class PrehashedSignatures {
+
+    static final int DIGEST_LENGTH = 64;
+    private static final int ABSORB_CHUNK = 8192;
+
+    // 0x01: pre-hash domain separator, 0x00: empty context, then the DER-encoded OID 2.16.840.1.101.3.4.2.12
+    private static final byte[] PREFIX = {
+            0x01, 0x00,
+            0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x0C
+    };
+
+    static {
+        PqcProviders.install();
+    }
+
+    // Re-initialized for every signature and verification
+    private static final EnginePool<Signature> SIGNATURES = new EnginePool<>(
+            () -> Signature.getInstance(PqcKeys.DSA_ALGORITHM, BouncyCastlePQCProvider.PROVIDER_NAME));
+
+    private PrehashedSignatures() {
+    }
+
+    static SHAKEDigest newDigest() {
+        return new SHAKEDigest(256);
+    }
+
+    /**
+     * Absorbs {@code data} from its position to its limit, leaving the buffer untouched. Read-only and direct buffers
+     * go through a small fixed chunk.
+     */
+    static void absorb(SHAKEDigest digest, ByteBuffer data) {
+        if (data.hasArray()) {
+            digest.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            return;
+        }
+        var source = data.duplicate();
+        var chunk = new byte[Math.min(ABSORB_CHUNK, source.remaining())];
+        while (source.hasRemaining()) {
+            int n = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, n);
+            digest.update(chunk, 0, n);
+        }
+    }
+
+    /**
+     * Signs what {@code digest} has absorbed; the digest is finalized.
+     */
+    static byte[] sign(PrivateKey key, SHAKEDigest digest) throws GeneralSecurityException {
+        var message = message(digest);
+        return SIGNATURES.apply(signature -> {
+            signature.initSign(key, CryptoPrimitives.secureRandom());
+            signature.update(message);
+            return signature.sign();
+        });
+    }
+
+    /**
+     * Checks {@code signature[offset, offset + length)} against what {@code digest} has absorbed; the digest is
+     * finalized.
+     */
+    static boolean verify(PublicKey key, SHAKEDigest digest, byte[] signature, int offset, int length)
+            throws GeneralSecurityException {
+        var message = message(digest);
+        return SIGNATURES.apply(verifier -> {
+            verifier.initVerify(key);
+            verifier.update(message);
+            return verifier.verify(signature, offset, length);
+        });
+    }
+
+    private static byte[] message(SHAKEDigest digest) {
+        var message = new byte[PREFIX.length + DIGEST_LENGTH];
+        System.arraycopy(PREFIX, 0, message, 0, PREFIX.length);
+        digest.doFinal(message, PREFIX.length, DIGEST_LENGTH);
+        return message;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.example.stego.cryptocommons;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A hybrid payload being produced while it is read; {@code length} is known before the first byte.
+ */
+public record SealedPayload(InputStream stream, long length) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.example.stego.cryptocommons;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Decrypts and authenticates the ciphertext one segment at a time as the plaintext is read. A segment is only
+ * released once its tag has been checked.
+ */
+class SegmentDecryptingInputStream extends InputStream {
+
+    private final InputStream ciphertext;
+    private final AesGcm.Segments segments;
+    private final byte[] segment;
+
+    private byte[] pending = new byte[0];
+    private int pendingPosition;
+    private long index;
+    private int lookahead = -1;
+    private boolean finished;
+
+    SegmentDecryptingInputStream(InputStream ciphertext, int segmentSize, AesGcm.Segments segments) {
+        this.ciphertext = ciphertext;
+        this.segments = segments;
+        this.segment = new byte[segmentSize + AesGcm.TAG_BYTES];
+    }
+
+    @Override
+    public int read() throws IOException {
+        var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pendingPosition == pending.length) {
+            if (finished) {
+                return -1;
+            }
+            nextSegment();
+        }
+        int n = Math.min(len, pending.length - pendingPosition);
+        System.arraycopy(pending, pendingPosition, b, off, n);
+        pendingPosition += n;
+        return n;
+    }
+
+    private void nextSegment() throws IOException {
+        int filled = 0;
+        if (lookahead >= 0) {
+            segment[filled++] = (byte) lookahead;
+        }
+        filled += ciphertext.readNBytes(segment, filled, segment.length - filled);
+        if (filled < AesGcm.TAG_BYTES) {
+            throw new IOException("Encrypted stream is truncated at segment " + index);
+        }
+
+        lookahead = filled == segment.length ? ciphertext.read() : -1;
+        boolean last = lookahead < 0;
+
+        try {
+            // A stream cut at a segment boundary fails here: its new last segment was sealed as not last
+            pending = segments.process(Cipher.DECRYPT_MODE, index++, last, segment, filled);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Segment " + (index - 1) + " failed authentication", e);
+        }
+        pendingPosition = 0;
+        finished = last;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ciphertext.close();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.example.stego.cryptocommons;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Emits the header, then the encrypted segments in order. Segments are read ahead and encrypted on a
+ * {@link ForkJoinPool}, up to {@code window} at once, so a large stream is encrypted on as many cores as the pool has
+ * while memory stays bounded by the window.
+ */
+class SegmentEncryptingInputStream extends InputStream {
+
+    private final InputStream plaintext;
+    private final AesGcm.Segments segments;
+    private final int segmentSize;
+    private final ForkJoinPool pool;
+    private final int window;
+    private final ArrayDeque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+
+    private byte[] pending;
+    private int pendingPosition;
+    private long index;
+    private int lookahead = -1;
+    private boolean inputFinished;
+
+    SegmentEncryptingInputStream(
+            InputStream plaintext,
+            int segmentSize,
+            AesGcm.Segments segments,
+            ForkJoinPool pool,
+            int window
+    ) {
+        this.plaintext = plaintext;
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+        this.window = window;
+        this.pending = segments.header();
+    }
+
+    @Override
+    public int read() throws IOException {
+        var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pendingPosition == pending.length) {
+            fillWindow();
+            var next = inFlight.poll();
+            if (next == null) {
+                return -1;
+            }
+            pending = await(next);
+            pendingPosition = 0;
+        }
+        int n = Math.min(len, pending.length - pendingPosition);
+        System.arraycopy(pending, pendingPosition, b, off, n);
+        pendingPosition += n;
+        return n;
+    }
+
+    private void fillWindow() throws IOException {
+        while (!inputFinished && inFlight.size() < window) {
+            var segment = new byte[segmentSize];
+            int filled = 0;
+            if (lookahead >= 0) {
+                segment[filled++] = (byte) lookahead;
+            }
+            filled += plaintext.readNBytes(segment, filled, segment.length - filled);
+
+            // One byte of lookahead tells whether this is the last segment, which its nonce has to say
+            lookahead = filled == segment.length ? plaintext.read() : -1;
+            boolean last = lookahead < 0;
+            long segmentIndex = index++;
+            int length = filled;
+
+            inFlight.add(pool.submit(() -> encrypt(segment, length, segmentIndex, last)));
+            inputFinished = last;
+        }
+    }
+
+    private byte[] encrypt(byte[] segment, int length, long segmentIndex, boolean last) throws IOException {
+        try {
+            return segments.process(Cipher.ENCRYPT_MODE, segmentIndex, last, segment, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encrypting segment " + segmentIndex + " failed", e);
+        }
+    }
+
+    private static byte[] await(ForkJoinTask<byte[]> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encrypting");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Encrypting a segment failed", e.getCause());
+        } catch (CancellationException e) {
+            throw new IOException("Encryption was cancelled", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inFlight.forEach(task -> task.cancel(false));
+        inFlight.clear();
+        plaintext.close();
+    }
+
+}
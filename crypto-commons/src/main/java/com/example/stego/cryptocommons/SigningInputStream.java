@@ -0,0 +1,79 @@
+package com.example.stego.cryptocommons;
+
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+
+/**
+ * Passes data through while absorbing it into the signature's pre-hash, then appends the signature once the data has
+ * ended. Only the running SHAKE-256 state is kept, whatever the data length.
+ */
+class SigningInputStream extends InputStream {
+
+    private final InputStream data;
+    private final PrivateKey key;
+    private final int signatureLength;
+    private final SHAKEDigest digest = PrehashedSignatures.newDigest();
+
+    private byte[] trailer;
+    private int trailerPosition;
+
+    SigningInputStream(InputStream data, PrivateKey key, int signatureLength) {
+        this.data = data;
+        this.key = key;
+        this.signatureLength = signatureLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (trailer == null) {
+            int n = data.read(b, off, len);
+            if (n > 0) {
+                digest.update(b, off, n);
+                return n;
+            }
+            if (n == 0) {
+                return 0;
+            }
+            trailer = sign();
+        }
+
+        if (trailerPosition == trailer.length) {
+            return -1;
+        }
+        int n = Math.min(len, trailer.length - trailerPosition);
+        System.arraycopy(trailer, trailerPosition, b, off, n);
+        trailerPosition += n;
+        return n;
+    }
+
+    private byte[] sign() throws IOException {
+        try {
+            var signed = PrehashedSignatures.sign(key, digest);
+            if (signed.length != signatureLength) {
+                throw new IOException("Signature is " + signed.length + " bytes, the header declared " + signatureLength);
+            }
+            return signed;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Signing the payload failed", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.example.stego.cryptocommons;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AesGcmTest {
+
+    private static final int SEGMENT_SIZE = AesGcm.MIN_SEGMENT_SIZE;
+    private static final int SEALED_SEGMENT_SIZE = SEGMENT_SIZE + AesGcm.TAG_BYTES;
+
+    private final SecretKey key = randomKey();
+
+    @Test
+    void roundTripsEmptyPlaintext() throws Exception {
+        var ciphertext = encrypt(new byte[0]);
+
+        assertEquals(AesGcm.HEADER_LENGTH + AesGcm.TAG_BYTES, ciphertext.length);
+        assertArrayEquals(new byte[0], decrypt(ciphertext, key));
+    }
+
+    @Test
+    void roundTripsExactlyOneSegment() throws Exception {
+        var plaintext = randomBytes(SEGMENT_SIZE);
+        var ciphertext = encrypt(plaintext);
+
+        assertEquals(AesGcm.HEADER_LENGTH + SEALED_SEGMENT_SIZE, ciphertext.length);
+        assertArrayEquals(plaintext, decrypt(ciphertext, key));
+    }
+
+    @Test
+    void roundTripsSeveralSegments() throws Exception {
+        var plaintext = randomBytes(3 * SEGMENT_SIZE + 123);
+        var ciphertext = encrypt(plaintext);
+
+        assertEquals(AesGcm.encryptedLength(plaintext.length, SEGMENT_SIZE), ciphertext.length);
+        assertArrayEquals(plaintext, decrypt(ciphertext, key));
+    }
+
+    @Test
+    void roundTripsWithDefaultSegmentSize() throws Exception {
+        var plaintext = randomBytes(AesGcm.DEFAULT_SEGMENT_SIZE + 1);
+        var ciphertext = AesGcm.encrypt(new ByteArrayInputStream(plaintext), key).readAllBytes();
+
+        assertEquals(AesGcm.encryptedLength(plaintext.length), ciphertext.length);
+        assertArrayEquals(plaintext, decrypt(ciphertext, key));
+    }
+
+    @Test
+    void maxPlaintextLengthInvertsEncryptedLength() {
+        for (long length : new long[]{0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 5L * SEGMENT_SIZE}) {
+            long encrypted = AesGcm.encryptedLength(length, SEGMENT_SIZE);
+
+            assertEquals(length, AesGcm.maxPlaintextLength(encrypted, SEGMENT_SIZE));
+            assertEquals(length - 1, AesGcm.maxPlaintextLength(encrypted - 1, SEGMENT_SIZE));
+        }
+        assertEquals(-1, AesGcm.maxPlaintextLength(AesGcm.HEADER_LENGTH + AesGcm.TAG_BYTES - 1, SEGMENT_SIZE));
+    }
+
+    @Test
+    void rejectsStreamTruncatedAtSegmentBoundary() throws Exception {
+        var ciphertext = encrypt(randomBytes(2 * SEGMENT_SIZE));
+        var truncated = Arrays.copyOf(ciphertext, AesGcm.HEADER_LENGTH + SEALED_SEGMENT_SIZE);
+
+        assertThrows(IOException.class, () -> decrypt(truncated, key));
+    }
+
+    @Test
+    void rejectsStreamTruncatedWithinSegment() throws Exception {
+        var ciphertext = encrypt(randomBytes(SEGMENT_SIZE + 100));
+        var truncated = Arrays.copyOf(ciphertext, ciphertext.length - 5);
+
+        assertThrows(IOException.class, () -> decrypt(truncated, key));
+    }
+
+    @Test
+    void rejectsStreamTruncatedInsideTag() throws Exception {
+        var ciphertext = encrypt(new byte[0]);
+        var truncated = Arrays.copyOf(ciphertext, ciphertext.length - 1);
+
+        assertThrows(IOException.class, () -> decrypt(truncated, key));
+    }
+
+    @Test
+    void rejectsReorderedSegments() throws Exception {
+        var ciphertext = encrypt(randomBytes(3 * SEGMENT_SIZE));
+        var first = AesGcm.HEADER_LENGTH;
+        var second = first + SEALED_SEGMENT_SIZE;
+        var reordered = ciphertext.clone();
+        System.arraycopy(ciphertext, second, reordered, first, SEALED_SEGMENT_SIZE);
+        System.arraycopy(ciphertext, first, reordered, second, SEALED_SEGMENT_SIZE);
+
+        assertThrows(IOException.class, () -> decrypt(reordered, key));
+    }
+
+    @Test
+    void rejectsTamperedCiphertext() throws Exception {
+        var ciphertext = encrypt(randomBytes(SEGMENT_SIZE + 100));
+        ciphertext[ciphertext.length - 50] ^= 0x01;
+
+        assertThrows(IOException.class, () -> decrypt(ciphertext, key));
+    }
+
+    @Test
+    void rejectsTamperedSalt() throws Exception {
+        var ciphertext = encrypt(randomBytes(100));
+        ciphertext[1 + Integer.BYTES] ^= 0x01;
+
+        assertThrows(IOException.class, () -> decrypt(ciphertext, key));
+    }
+
+    @Test
+    void rejectsTamperedNoncePrefix() throws Exception {
+        var ciphertext = encrypt(randomBytes(100));
+        ciphertext[AesGcm.HEADER_LENGTH - 1] ^= 0x01;
+
+        assertThrows(IOException.class, () -> decrypt(ciphertext, key));
+    }
+
+    @Test
+    void rejectsSegmentSizeChangedInHeader() throws Exception {
+        // Still a valid size, so only the header's authentication as AAD catches it
+        var ciphertext = encrypt(randomBytes(2 * SEGMENT_SIZE));
+        ciphertext[1 + Integer.BYTES - 1] ^= 0x01;
+
+        assertThrows(IOException.class, () -> decrypt(ciphertext, key));
+    }
+
+    @Test
+    void rejectsUnsupportedHeader() throws Exception {
+        var badVersion = encrypt(randomBytes(100));
+        badVersion[0] = (byte) (AesGcm.VERSION + 1);
+        var missingHeader = Arrays.copyOf(badVersion, AesGcm.HEADER_LENGTH - 1);
+
+        assertThrows(IllegalArgumentException.class, () -> decrypt(badVersion, key));
+        assertThrows(IllegalArgumentException.class, () -> decrypt(missingHeader, key));
+    }
+
+    @Test
+    void rejectsWrongKey() throws Exception {
+        var ciphertext = encrypt(randomBytes(100));
+        var otherKey = randomKey();
+
+        assertThrows(IOException.class, () -> decrypt(ciphertext, otherKey));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws Exception {
+        return AesGcm.encrypt(new ByteArrayInputStream(plaintext), key, SEGMENT_SIZE, ForkJoinPool.commonPool())
+                .readAllBytes();
+    }
+
+    private static byte[] decrypt(byte[] ciphertext, SecretKey key) throws Exception {
+        return AesGcm.decrypt(new ByteArrayInputStream(ciphertext), key).readAllBytes();
+    }
+
+    private static SecretKey randomKey() {
+        var bytes = new byte[AesGcm.KEY_SIZE / 8];
+        new Random().nextBytes(bytes);
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    private static byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
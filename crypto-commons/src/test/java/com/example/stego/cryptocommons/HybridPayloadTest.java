@@ -0,0 +1,112 @@
+package com.example.stego.cryptocommons;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HybridPayloadTest {
+
+    private static final KeyPair RECIPIENT_KEYS = generate(true);
+    private static final KeyPair SENDER_KEYS = generate(false);
+
+    private final byte[] secret = randomBytes(3 * AesGcm.DEFAULT_SEGMENT_SIZE / 2);
+
+    @Test
+    void opensWhatItSeals() throws Exception {
+        var payload = seal(secret);
+
+        assertEquals(HybridPayload.sealedLength(secret.length), payload.length);
+        try (var opened = HybridPayload.open(payload, RECIPIENT_KEYS.getPrivate())) {
+            assertArrayEquals(secret, opened.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsFlippedCiphertextBit() throws Exception {
+        var payload = seal(secret);
+        var header = header(payload);
+        // Deep inside the second segment, past anything a header check would look at
+        payload[(int) header.signatureOffset() - 100] ^= 0x01;
+
+        assertFailure(HybridCryptoException.Reason.SIGNATURE_INVALID, payload);
+    }
+
+    @Test
+    void rejectsFlippedSignatureBit() throws Exception {
+        var payload = seal(secret);
+        payload[(int) header(payload).signatureOffset() + 10] ^= 0x01;
+
+        assertFailure(HybridCryptoException.Reason.SIGNATURE_INVALID, payload);
+    }
+
+    @Test
+    void rejectsSignatureBySubstitutedSenderKey() throws Exception {
+        // Re-signing with another key is only caught if the embedded sender key is the one verified against
+        var payload = seal(secret);
+        var otherSender = seal(secret, PqcKeys.generateDsaKeyPair());
+        var header = header(payload);
+        System.arraycopy(otherSender, (int) header.senderPublicKeyOffset(), payload, (int) header.senderPublicKeyOffset(),
+                header.senderPublicKeyLength());
+
+        assertFailure(HybridCryptoException.Reason.SIGNATURE_INVALID, payload);
+    }
+
+    @Test
+    void rejectsWrongRecipientKey() throws Exception {
+        var payload = seal(secret);
+        var otherRecipient = PqcKeys.generateKemKeyPair();
+
+        // A wrong Kyber key decapsulates to a wrong AES key rather than failing, so it surfaces while reading
+        var e = assertThrows(IOException.class, () -> {
+            try (var opened = HybridPayload.open(payload, otherRecipient.getPrivate())) {
+                opened.readAllBytes();
+            }
+        });
+        assertEquals(HybridCryptoException.Reason.DECRYPTION_FAILED,
+                ((HybridCryptoException) e.getCause()).getReason());
+    }
+
+    private static byte[] seal(byte[] secret) throws Exception {
+        return seal(secret, SENDER_KEYS);
+    }
+
+    private static byte[] seal(byte[] secret, KeyPair senderKeys) throws Exception {
+        try (var sealed = HybridPayload.seal(new ByteArrayInputStream(secret), secret.length,
+                RECIPIENT_KEYS.getPublic(), senderKeys.getPrivate())) {
+            var payload = sealed.stream().readAllBytes();
+            assertEquals(sealed.length(), payload.length);
+            return payload;
+        }
+    }
+
+    private static PayloadContainer.Header header(byte[] payload) throws Exception {
+        return PayloadContainer.readHeader(new ByteArrayInputStream(payload));
+    }
+
+    private static void assertFailure(HybridCryptoException.Reason reason, byte[] payload) {
+        var e = assertThrows(HybridCryptoException.class, () -> HybridPayload.open(payload, RECIPIENT_KEYS.getPrivate()));
+        assertEquals(reason, e.getReason());
+    }
+
+    private static KeyPair generate(boolean kem) {
+        try {
+            return kem ? PqcKeys.generateKemKeyPair() : PqcKeys.generateDsaKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.example.stego.cryptocommons;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadContainerTest {
+
+    private static final byte[] SENDER_PUBLIC_KEY = filled(5, 0x11);
+    private static final byte[] ENCAPSULATION = filled(7, 0x22);
+    private static final byte[] ENCRYPTED_DATA = filled(11, 0x33);
+    private static final byte[] SIGNATURE = filled(3, 0x44);
+
+    @Test
+    void roundTripsSections() throws Exception {
+        var container = PayloadContainer.wrap(ByteBuffer.wrap(container()));
+
+        assertEquals(header(), container.header());
+        assertArrayEquals(SENDER_PUBLIC_KEY, bytes(container.senderPublicKey()));
+        assertArrayEquals(ENCAPSULATION, bytes(container.encapsulation()));
+        assertArrayEquals(ENCRYPTED_DATA, bytes(container.encryptedData()));
+        assertArrayEquals(SIGNATURE, bytes(container.signature()));
+        assertArrayEquals(ENCRYPTED_DATA, container.encryptedDataStream().readAllBytes());
+    }
+
+    @Test
+    void wrapsFromBufferPositionWithoutMovingIt() throws Exception {
+        var payload = container();
+        var buffer = ByteBuffer.allocate(payload.length + 6);
+        buffer.position(4).put(payload).position(4).limit(4 + payload.length);
+
+        var container = PayloadContainer.wrap(buffer);
+
+        assertArrayEquals(SIGNATURE, bytes(container.signature()));
+        assertEquals(4, buffer.position());
+        assertEquals(4 + payload.length, buffer.limit());
+    }
+
+    @Test
+    void sectionsAreReadOnlySlicesOfTheCallersBuffer() throws Exception {
+        var payload = container();
+        var container = PayloadContainer.wrap(ByteBuffer.wrap(payload));
+        var senderPublicKey = container.senderPublicKey();
+
+        assertTrue(senderPublicKey.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> senderPublicKey.put(0, (byte) 0));
+        assertThrows(ReadOnlyBufferException.class, () -> container.encryptedData().put((byte) 0));
+
+        // Not copied: a change to the caller's bytes shows through
+        payload[PayloadContainer.HEADER_LENGTH] = 0x7F;
+        assertEquals(0x7F, senderPublicKey.get(0));
+    }
+
+    @Test
+    void readsHeaderAloneFromStream() throws Exception {
+        var input = new ByteArrayInputStream(container());
+
+        assertEquals(header(), PayloadContainer.readHeader(input));
+        // Left positioned at the sender's public key
+        assertArrayEquals(SENDER_PUBLIC_KEY, input.readNBytes(SENDER_PUBLIC_KEY.length));
+    }
+
+    @Test
+    void headerOffsetsFollowLayout() {
+        var header = header();
+
+        assertEquals(PayloadContainer.HEADER_LENGTH, header.senderPublicKeyOffset());
+        assertEquals(PayloadContainer.HEADER_LENGTH + 5, header.encapsulationOffset());
+        assertEquals(PayloadContainer.HEADER_LENGTH + 12, header.encryptedDataOffset());
+        assertEquals(PayloadContainer.HEADER_LENGTH + 23, header.signatureOffset());
+        assertEquals(PayloadContainer.HEADER_LENGTH + 26, header.totalLength());
+    }
+
+    @Test
+    void readHeaderRejectsUnsupportedVersion() {
+        var bytes = header().encode();
+        bytes[Integer.BYTES] = (byte) (PayloadContainer.CURRENT_VERSION + 1);
+
+        assertMalformed(() -> PayloadContainer.readHeader(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void readHeaderRejectsWrongMagic() {
+        var bytes = header().encode();
+        bytes[0] ^= 0x01;
+
+        assertMalformed(() -> PayloadContainer.readHeader(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void readHeaderRejectsNegativeLengths() {
+        assertMalformed(() -> readHeader(new PayloadContainer.Header(PayloadContainer.CURRENT_VERSION, -1, 7, 3, 11)));
+        assertMalformed(() -> readHeader(new PayloadContainer.Header(PayloadContainer.CURRENT_VERSION, 5, -1, 3, 11)));
+        assertMalformed(() -> readHeader(new PayloadContainer.Header(PayloadContainer.CURRENT_VERSION, 5, 7, -1, 11)));
+        assertMalformed(() -> readHeader(new PayloadContainer.Header(PayloadContainer.CURRENT_VERSION, 5, 7, 3, -1)));
+    }
+
+    @Test
+    void readHeaderRejectsOverflowingDataLength() {
+        assertMalformed(() -> readHeader(PayloadContainer.Header.of(5, 7, 3, Long.MAX_VALUE / 2 + 1)));
+    }
+
+    @Test
+    void readHeaderRejectsShortInput() {
+        var bytes = Arrays.copyOf(header().encode(), PayloadContainer.HEADER_LENGTH - 1);
+
+        assertMalformed(() -> PayloadContainer.readHeader(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void headerIsLittleEndian() {
+        var encoded = ByteBuffer.wrap(header().encode()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(PayloadContainer.MAGIC, encoded.getInt(0));
+        assertEquals(ENCRYPTED_DATA.length, encoded.getLong(PayloadContainer.HEADER_LENGTH - Long.BYTES));
+    }
+
+    @Test
+    void wrapRejectsSectionsThatDoNotFillBuffer() {
+        var payload = container();
+
+        assertMalformed(() -> PayloadContainer.wrap(ByteBuffer.wrap(Arrays.copyOf(payload, payload.length - 1))));
+        assertMalformed(() -> PayloadContainer.wrap(ByteBuffer.wrap(Arrays.copyOf(payload, payload.length + 1))));
+        assertMalformed(() -> PayloadContainer.wrap(ByteBuffer.wrap(Arrays.copyOf(payload, PayloadContainer.HEADER_LENGTH - 1))));
+    }
+
+    private static PayloadContainer.Header header() {
+        return PayloadContainer.Header.of(
+                SENDER_PUBLIC_KEY.length, ENCAPSULATION.length, SIGNATURE.length, ENCRYPTED_DATA.length
+        );
+    }
+
+    private static byte[] container() {
+        return ByteBuffer.allocate((int) header().totalLength())
+                .put(header().encode())
+                .put(SENDER_PUBLIC_KEY)
+                .put(ENCAPSULATION)
+                .put(ENCRYPTED_DATA)
+                .put(SIGNATURE)
+                .array();
+    }
+
+    private static PayloadContainer.Header readHeader(PayloadContainer.Header header) throws Exception {
+        return PayloadContainer.readHeader(new ByteArrayInputStream(header.encode()));
+    }
+
+    private static void assertMalformed(Executable executable) {
+        var e = assertThrows(HybridCryptoException.class, executable);
+        assertEquals(HybridCryptoException.Reason.MALFORMED_PAYLOAD, e.getReason());
+    }
+
+    private static byte[] bytes(ByteBuffer section) {
+        var bytes = new byte[section.remaining()];
+        section.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(int length, int value) {
+        var bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+}
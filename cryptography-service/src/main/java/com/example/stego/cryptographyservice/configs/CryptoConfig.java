@@ -0,0 +1,45 @@
+package com.example.stego.cryptographyservice.configs;
+
+import com.example.stego.cryptocommons.CryptoPrimitives;
+import com.example.stego.cryptographyservice.keypool.KeyPairPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+@Slf4j
+public class CryptoConfig {
+
+    // Segments of every AES stream are encrypted on this pool rather than on the request threads
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool encryptionPool(@Value("${pqcstego.crypto.encryption-parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Bean(destroyMethod = "close")
+    public KeyPairPool keyPairPool(
+            MeterRegistry meterRegistry,
+            @Value("${pqcstego.crypto.key-pool.capacity:64}") int capacity,
+            @Value("${pqcstego.crypto.key-pool.low-watermark:16}") int lowWatermark,
+            @Value("${pqcstego.crypto.key-pool.refill-workers:2}") int refillWorkers
+    ) {
+        return new KeyPairPool(Math.max(1, capacity), lowWatermark, Math.max(1, refillWorkers), meterRegistry);
+    }
+
+    // Runners complete before the application reports ready, so the first requests don't pay for class loading
+    @Bean
+    public ApplicationRunner cryptoWarmUp(KeyPairPool keyPairPool) {
+        return args -> {
+            long start = System.nanoTime();
+            CryptoPrimitives.warmUp();
+            log.info("Crypto primitives warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
+            keyPairPool.refill();
+        };
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.example.stego.cryptographyservice.configs;
+
+import com.example.stego.cryptographyservice.document.PublicKey;
+import com.example.stego.cryptographyservice.keycache.KemKeyCache;
+import com.example.stego.cryptographyservice.keycache.PublicKeyCache;
+import com.example.stego.cryptographyservice.keycache.PublicKeyChangeHealthIndicator;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class KeyCacheConfig {
+
+    @Bean
+    public PublicKeyCache publicKeyCache(
+            @Value("${pqcstego.crypto.key-cache.max-entries:10000}") int maxEntries,
+            @Value("${pqcstego.crypto.key-cache.ttl:5m}") Duration ttl
+    ) {
+        return new PublicKeyCache(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    @Bean
+    public KemKeyCache kemKeyCache(@Value("${pqcstego.crypto.kem-key-cache.max-entries:4096}") int maxEntries) {
+        return new KemKeyCache(maxEntries);
+    }
+
+    /**
+     * Every replica watches the key collection and drops the entry of any user whose keys change, whichever replica
+     * wrote them. Change streams need a replica set; on a standalone server the watch fails, the service reports
+     * itself not ready through {@link PublicKeyChangeHealthIndicator}, and entries only live out their TTL.
+     */
+    @Bean(destroyMethod = "stop")
+    public MessageListenerContainer publicKeyChangeListener(
+            MongoTemplate mongoTemplate,
+            PublicKeyCache publicKeyCache,
+            PublicKeyChangeHealthIndicator publicKeyChangeHealth
+    ) {
+        var container = new DefaultMessageListenerContainer(mongoTemplate);
+        var request = ChangeStreamRequest.<PublicKey>builder()
+                .collection(mongoTemplate.getCollectionName(PublicKey.class))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .publishTo((Message<ChangeStreamDocument<Document>, PublicKey> message) -> {
+                    var changed = message.getBody();
+                    if (changed != null && changed.getUserId() != null) {
+                        publicKeyCache.invalidate(changed.getUserId());
+                    } else {
+                        // Deletes carry no document to tell whose key it was
+                        publicKeyCache.invalidateAll();
+                    }
+                })
+                .build();
+        container.register(request, PublicKey.class, error -> {
+            log.error("Watching public key changes failed; cached keys now only expire by TTL", error);
+            publicKeyChangeHealth.failed(error);
+        });
+        container.start();
+        return container;
+    }
+
+}
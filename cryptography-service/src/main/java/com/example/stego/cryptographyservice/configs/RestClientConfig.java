@@ -0,0 +1,27 @@
+package com.example.stego.cryptographyservice.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+
+@Configuration
+public class RestClientConfig {
+
+    @Bean
+    @LoadBalanced
+    public RestClient.Builder loadBalancedRestClientBuilder() {
+        return RestClient.builder();
+    }
+
+    // Only downloads secrets to seal; responses are streamed, interceptors only buffer request bodies
+    @Bean
+    public RestClient fileServiceRestClient(
+            RestClient.Builder builder,
+            @Value("${services.file-service-url}") String fileServiceUrl
+    ) {
+        return builder.baseUrl(fileServiceUrl).build();
+    }
+
+}
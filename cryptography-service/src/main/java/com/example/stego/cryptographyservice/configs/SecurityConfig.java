@@ -1,19 +1,32 @@
 package com.example.stego.cryptographyservice.configs;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Carries pqcstego.internal.service-token on service-to-service calls
+    public static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
@@ -21,6 +34,11 @@ public class SecurityConfig {
                         // Allow public access to generate keys and view public keys
                         .requestMatchers(HttpMethod.POST, "/api/v1/keys/generate").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/{userId}/keys").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/v1/keys/user/{userId}").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/v1/keys/batch").permitAll()
+                        // Service-to-service hybrid payload operations from video-processing-service carry the shared
+                        // service token instead of a user token; the gateway refuses these paths on every route
+                        .requestMatchers("/api/v1/internal/**").access(serviceTokenRequired())
                         // Require authentication to set a key
                         .requestMatchers("/api/v1/keys/set").authenticated()
                         // Allow actuator health checks
@@ -35,4 +53,14 @@ public class SecurityConfig {
                 .build();
     }
 
+    // Without a configured token every internal call is refused
+    private AuthorizationManager<RequestAuthorizationContext> serviceTokenRequired() {
+        var expected = serviceToken.getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            var presented = context.getRequest().getHeader(SERVICE_TOKEN_HEADER);
+            return new AuthorizationDecision(expected.length > 0 && presented != null
+                    && MessageDigest.isEqual(expected, presented.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
 }
@@ -22,7 +22,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AesController {
 
-    private CryptographyService cryptographyService;
+    private final CryptographyService cryptographyService;
 
     /**
      * Generates a new AES-256 secret key.
@@ -92,7 +92,7 @@ public class AesController {
             var keyBytes = Base64.getDecoder().decode(base64AesKey);
             var aesKey = new SecretKeySpec(keyBytes, "AES");
 
-            // Decrypt the stream
+            // Decrypt the stream; a malformed header, wrong key or tampered first segment is a bad request
             var decryptedStream = cryptographyService.decryptData(encryptedStream, aesKey);
 
             // Return decrypted stream
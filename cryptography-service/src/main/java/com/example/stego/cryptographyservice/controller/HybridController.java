@@ -0,0 +1,99 @@
+package com.example.stego.cryptographyservice.controller;
+
+import com.example.stego.cryptocommons.HybridCryptoException;
+import com.example.stego.cryptographyservice.model.OpenRequestDTO;
+import com.example.stego.cryptographyservice.model.SealRequestDTO;
+import com.example.stego.cryptographyservice.sevices.CryptographyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Hybrid payload operations for video-processing-service when it runs with {@code pqcstego.crypto.mode=remote}.
+ */
+@RestController
+@RequestMapping("/api/v1/internal/crypto/hybrid")
+@RequiredArgsConstructor
+public class HybridController {
+
+    // Carries the HybridCryptoException reason (e.g. SIGNATURE_INVALID) of a payload that cannot be opened
+    public static final String FAILURE_HEADER = "X-Crypto-Failure";
+
+    private final CryptographyService cryptographyService;
+
+    /**
+     * Seals a secret stored in file-service. The payload is streamed back while it is being produced, with its
+     * length declared up front.
+     */
+    @PostMapping("/seal")
+    public ResponseEntity<StreamingResponseBody> seal(@RequestBody SealRequestDTO sealRequest) {
+        try {
+            var sealed = cryptographyService.sealFile(
+                    sealRequest.getSecretFileId(),
+                    sealRequest.getRecipientUserId(),
+                    sealRequest.getSenderPrivateKey()
+            );
+
+            StreamingResponseBody body = outputStream -> {
+                try (sealed) {
+                    sealed.stream().transferTo(outputStream);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(sealed.length())
+                    .body(body);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid key material.", e);
+        }
+    }
+
+    /**
+     * Verifies and decrypts a payload extracted from a stego video and streams the secret back. The key travels in
+     * the JSON {@code request} part, the payload in the {@code payload} part; payloads above
+     * {@code pqcstego.crypto.max-open-payload-mb} are refused with 413.
+     */
+    @PostMapping(value = "/open", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> open(
+            @RequestPart("request") OpenRequestDTO openRequest,
+            @RequestPart("payload") MultipartFile payload) throws IOException {
+
+        try {
+            if (openRequest.getRecipientPrivateKey() == null) {
+                throw new IllegalArgumentException("Missing key material");
+            }
+            // The signature covers the whole ciphertext, so nothing can be released before all of it has arrived
+            var secret = cryptographyService.openPayload(
+                    payload.getInputStream(), payload.getSize(), openRequest.getRecipientPrivateKey()
+            );
+
+            StreamingResponseBody body = outputStream -> {
+                try (secret) {
+                    secret.transferTo(outputStream);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(body);
+        } catch (HybridCryptoException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .header(FAILURE_HEADER, e.getReason().name())
+                    .build();
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid key material.", e);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.stego.cryptographyservice.controller;
+
+import com.example.stego.cryptographyservice.model.KemDecapsulateRequestDTO;
+import com.example.stego.cryptographyservice.model.KemEncapsulateRequestDTO;
+import com.example.stego.cryptographyservice.model.KemSecretDTO;
+import com.example.stego.cryptographyservice.sevices.CryptographyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Kyber key encapsulation for services that run their own AES: the shared secret is an AES-256 key.
+ */
+@RestController
+@RequestMapping("/api/v1/internal/crypto/kem")
+@RequiredArgsConstructor
+public class KemController {
+
+    private final CryptographyService cryptographyService;
+
+    /**
+     * Encapsulate a fresh key to a user's active Kyber key, or to the Kyber key given
+     */
+    @PostMapping("/encapsulate")
+    public ResponseEntity<KemSecretDTO> encapsulate(@RequestBody KemEncapsulateRequestDTO request) {
+        try {
+            var secret = request.getRecipientUserId() != null
+                    ? cryptographyService.encapsulateForUser(request.getRecipientUserId())
+                    : cryptographyService.encapsulate(requireNonNull(request.getKemPublicKey()));
+            return ResponseEntity.ok(new KemSecretDTO(
+                    Base64.getEncoder().encodeToString(secret.getEncoded()),
+                    Base64.getEncoder().encodeToString(secret.getEncapsulation())
+            ));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid key material.", e);
+        }
+    }
+
+    /**
+     * Recover the key of an encapsulation with the recipient's Kyber private key
+     */
+    @PostMapping("/decapsulate")
+    public ResponseEntity<KemSecretDTO> decapsulate(@RequestBody KemDecapsulateRequestDTO request) {
+        try {
+            var encapsulation = Base64.getDecoder().decode(requireNonNull(request.getEncapsulation()));
+            var secret = cryptographyService.decapsulate(requireNonNull(request.getKemPrivateKey()), encapsulation);
+            return ResponseEntity.ok(new KemSecretDTO(
+                    Base64.getEncoder().encodeToString(secret.getEncoded()),
+                    request.getEncapsulation()
+            ));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid key material.", e);
+        }
+    }
+
+    private static String requireNonNull(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing key material");
+        }
+        return value;
+    }
+
+}
@@ -1,22 +1,29 @@
 package com.example.stego.cryptographyservice.controller;
 
 import com.example.stego.cryptographyservice.document.PublicKey;
+import com.example.stego.cryptographyservice.model.KeyBatchRequestDTO;
 import com.example.stego.cryptographyservice.model.KeyPairDTO;
 import com.example.stego.cryptographyservice.model.PublicKeyDTO;
+import com.example.stego.cryptographyservice.model.UserKeysDTO;
 import com.example.stego.cryptographyservice.sevices.CryptographyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/keys")
 @RequiredArgsConstructor
 public class PqcController {
 
+    private static final int MAX_BATCH_SIZE = 1000;
     private final CryptographyService cryptographyService;
 
     /**
@@ -54,5 +61,29 @@ public class PqcController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Fetch active public keys of many users in one call, as a map of user id to keys. Users without an active key
+     * are left out. Send {@code Accept: application/cbor} for the binary encoding.
+     */
+    @PostMapping(value = "/batch", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<Map<String, UserKeysDTO>> getPublicKeysForUsers(@RequestBody KeyBatchRequestDTO request) {
+        var userIds = request.getUserIds();
+        if (userIds == null || userIds.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "userIds must list at most " + MAX_BATCH_SIZE + " users");
+        }
+
+        var keys = new LinkedHashMap<String, UserKeysDTO>();
+        cryptographyService.getPublicKeysForUsers(userIds.stream().distinct().toList())
+                .forEach((userId, publicKey) -> {
+                    try {
+                        keys.put(userId, UserKeysDTO.from(publicKey));
+                    } catch (IllegalArgumentException e) {
+                        // Stored as uploaded; a key that isn't Base64 is left out rather than failing the page
+                    }
+                });
+        return ResponseEntity.ok(keys);
+    }
+
 
 }
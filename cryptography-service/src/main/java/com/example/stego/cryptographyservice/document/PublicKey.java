@@ -5,7 +5,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -13,11 +14,17 @@ import java.time.Instant;
 @Data
 @NoArgsConstructor
 @Document("public_keys")
+@CompoundIndexes({
+        // Serves single and batch ($in) lookups of active keys; also covers queries on userId alone
+        @CompoundIndex(name = "userId_isActive", def = "{'userId': 1, 'isActive': 1}"),
+        // At most one active key per user, whatever concurrent rotations do
+        @CompoundIndex(name = "userId_active_unique", def = "{'userId': 1}", unique = true,
+                partialFilter = "{ 'isActive': true }")
+})
 public class PublicKey {
     @Id
     private String id;
 
-    @Indexed
     private String userId;
 
     private String kemPublicKey; // CRYSTALS-Kyber public key, Base64 encoded
@@ -0,0 +1,22 @@
+package com.example.stego.cryptographyservice.keycache;
+
+import com.example.stego.cryptocommons.PqcKeys;
+import com.example.stego.cryptographyservice.document.PublicKey;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * A user's active key document together with its keys already parsed; both are null if they do not parse.
+ */
+public record ActiveKeys(PublicKey document, java.security.PublicKey kemKey, java.security.PublicKey dsaKey) {
+
+    public static ActiveKeys parse(PublicKey document) throws GeneralSecurityException {
+        return new ActiveKeys(
+                document,
+                PqcKeys.decodeKemPublicKey(document.getKemPublicKey()),
+                PqcKeys.decodeDsaPublicKey(Base64.getDecoder().decode(document.getDsaPublicKey()))
+        );
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.example.stego.cryptographyservice.keycache;
+
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of parsed Kyber public keys, keyed by {@link com.example.stego.cryptocommons.PqcKeys#fingerprint}.
+ * Keys are immutable and identified by their content, so entries never need invalidating.
+ */
+public class KemKeyCache {
+
+    private final Map<String, PublicKey> entries;
+
+    public KemKeyCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PublicKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized PublicKey get(String fingerprint) {
+        return entries.get(fingerprint);
+    }
+
+    public synchronized void put(String fingerprint, PublicKey key) {
+        entries.put(fingerprint, key);
+    }
+
+}
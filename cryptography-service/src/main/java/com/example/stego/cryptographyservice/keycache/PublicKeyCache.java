@@ -0,0 +1,69 @@
+package com.example.stego.cryptographyservice.keycache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of users' active keys, keyed by user id, whose entries also expire {@code ttl} after they were loaded.
+ * <p>
+ * Loads race with invalidations: a lookup that read Mongo before a key was replaced must not cache what it read
+ * after the replacement invalidated the user. Callers therefore take a {@link #stamp()} before reading and hand it
+ * to {@link #put}, which drops the entry if anything has been invalidated since.
+ */
+public class PublicKeyCache {
+
+    private final Map<String, Entry> entries;
+    private final Duration ttl;
+    private final Clock clock;
+    private long invalidations;
+
+    public PublicKeyCache(int maxEntries, Duration ttl, Clock clock) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public synchronized ActiveKeys get(String userId) {
+        var entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (!clock.instant().isBefore(entry.expiresAt())) {
+            entries.remove(userId);
+            return null;
+        }
+        return entry.keys();
+    }
+
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    public synchronized void put(String userId, ActiveKeys keys, long stamp) {
+        if (stamp == invalidations) {
+            entries.put(userId, new Entry(keys, clock.instant().plus(ttl)));
+        }
+    }
+
+    public synchronized void invalidate(String userId) {
+        invalidations++;
+        entries.remove(userId);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    private record Entry(ActiveKeys keys, Instant expiresAt) {
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.example.stego.cryptographyservice.keycache;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports whether the change stream that invalidates {@link PublicKeyCache} entries across replicas is running.
+ * <p>
+ * Without it a replica keeps serving a replaced key until the entry's TTL runs out, so the service is reported down
+ * (and, through the readiness group, taken out of rotation) rather than quietly serving stale keys.
+ */
+@Component("publicKeyChanges")
+public class PublicKeyChangeHealthIndicator implements HealthIndicator {
+
+    private volatile Throwable failure;
+
+    public void failed(Throwable error) {
+        failure = error;
+    }
+
+    @Override
+    public Health health() {
+        var error = failure;
+        if (error != null) {
+            return Health.down(error)
+                    .withDetail("hint", "change streams need MongoDB to run as a replica set")
+                    .build();
+        }
+        return Health.up().build();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.example.stego.cryptographyservice.keypool;
+
+import com.example.stego.cryptocommons.PqcKeys;
+import com.example.stego.cryptographyservice.model.KeyPairDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kyber1024 + Dilithium5 key pairs generated ahead of the requests that hand them out.
+ * <p>
+ * Up to {@code capacity} pairs wait in memory; whenever a take leaves {@code lowWatermark} or fewer, up to
+ * {@code refillWorkers} virtual threads generate pairs until the pool is full again. A pair is removed from the queue
+ * by the take that returns it, so it is handed out exactly once, and pairs are never written anywhere. When the pool
+ * runs dry, as during an onboarding spike faster than the workers, the request generates its own pair.
+ */
+@Slf4j
+public class KeyPairPool implements AutoCloseable {
+
+    private final BlockingQueue<KeyPairDTO> ready;
+    private final int lowWatermark;
+    private final int refillWorkers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Counter hits;
+    private final Counter misses;
+    private volatile boolean closed;
+
+    public KeyPairPool(int capacity, int lowWatermark, int refillWorkers, MeterRegistry meterRegistry) {
+        this.ready = new ArrayBlockingQueue<>(capacity);
+        this.lowWatermark = Math.min(lowWatermark, capacity - 1);
+        this.refillWorkers = refillWorkers;
+
+        Gauge.builder("pqcstego.keypool.depth", ready, BlockingQueue::size)
+                .description("Pre-generated key pairs ready to hand out")
+                .register(meterRegistry);
+        Gauge.builder("pqcstego.keypool.capacity", ready, queue -> queue.size() + queue.remainingCapacity())
+                .register(meterRegistry);
+        hits = Counter.builder("pqcstego.keypool.takes").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("pqcstego.keypool.takes").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * @return a pair no other caller has received, from the pool if one is ready
+     */
+    public KeyPairDTO take() throws GeneralSecurityException {
+        var pair = ready.poll();
+        if (ready.size() <= lowWatermark) {
+            refill();
+        }
+        if (pair != null) {
+            hits.increment();
+            return pair;
+        }
+        misses.increment();
+        return generate();
+    }
+
+    /**
+     * Starts refill workers, up to {@code refillWorkers} at once, unless enough are already running.
+     */
+    public void refill() {
+        while (!closed) {
+            int active = activeWorkers.get();
+            if (active >= refillWorkers) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                Thread.ofVirtual().name("keypool-refill-" + active).start(this::fill);
+                return;
+            }
+        }
+    }
+
+    private void fill() {
+        try {
+            while (!closed && ready.remainingCapacity() > 0) {
+                // Another worker may fill the last slot first; the surplus pair is dropped, never handed out
+                ready.offer(generate());
+            }
+        } catch (GeneralSecurityException | RuntimeException e) {
+            log.error("Refilling the key pair pool failed", e);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private static KeyPairDTO generate() throws GeneralSecurityException {
+        var kemKeyPair = PqcKeys.generateKemKeyPair();
+        var dsaKeyPair = PqcKeys.generateDsaKeyPair();
+
+        return new KeyPairDTO(
+                PqcKeys.encode(kemKeyPair.getPublic()),
+                PqcKeys.encode(kemKeyPair.getPrivate()),
+                PqcKeys.encode(dsaKeyPair.getPublic()),
+                PqcKeys.encode(dsaKeyPair.getPrivate())
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ready.clear();
+    }
+
+}
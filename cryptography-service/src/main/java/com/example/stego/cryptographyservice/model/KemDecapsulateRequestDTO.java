@@ -0,0 +1,11 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.Data;
+
+@Data
+public class KemDecapsulateRequestDTO {
+
+    private String kemPrivateKey; // Kyber, Base64 PKCS#8
+    private String encapsulation; // Base64
+
+}
@@ -0,0 +1,12 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.Data;
+
+@Data
+public class KemEncapsulateRequestDTO {
+
+    // Either a user whose active key to encapsulate to, or the key itself
+    private String recipientUserId;
+    private String kemPublicKey; // Kyber, Base64 X.509
+
+}
@@ -0,0 +1,13 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class KemSecretDTO {
+
+    private String sharedSecret; // AES-256 key, Base64
+    private String encapsulation; // Base64
+
+}
@@ -0,0 +1,12 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class KeyBatchRequestDTO {
+
+    private List<String> userIds;
+
+}
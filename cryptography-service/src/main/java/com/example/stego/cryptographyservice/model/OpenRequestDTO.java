@@ -0,0 +1,10 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.Data;
+
+@Data
+public class OpenRequestDTO {
+
+    private String recipientPrivateKey; // Kyber, Base64 PKCS#8
+
+}
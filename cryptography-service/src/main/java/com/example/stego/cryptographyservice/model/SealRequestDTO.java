@@ -0,0 +1,12 @@
+package com.example.stego.cryptographyservice.model;
+
+import lombok.Data;
+
+@Data
+public class SealRequestDTO {
+
+    private String secretFileId;
+    private String recipientUserId;
+    private String senderPrivateKey; // Dilithium, Base64 PKCS#8
+
+}
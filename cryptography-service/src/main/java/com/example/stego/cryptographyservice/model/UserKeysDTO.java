@@ -0,0 +1,27 @@
+package com.example.stego.cryptographyservice.model;
+
+import com.example.stego.cryptographyservice.document.PublicKey;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Base64;
+
+/**
+ * A user's active keys in batch lookups. The raw X.509 bytes are written as Base64 strings in JSON and as byte
+ * strings in CBOR, which keeps the binary form a quarter smaller.
+ */
+@Data
+@AllArgsConstructor
+public class UserKeysDTO {
+
+    private byte[] kemPublicKey;
+    private byte[] dsaPublicKey;
+
+    public static UserKeysDTO from(PublicKey publicKey) {
+        return new UserKeysDTO(
+                Base64.getDecoder().decode(publicKey.getKemPublicKey()),
+                Base64.getDecoder().decode(publicKey.getDsaPublicKey())
+        );
+    }
+
+}
@@ -3,10 +3,14 @@ package com.example.stego.cryptographyservice.repo;
 import com.example.stego.cryptographyservice.document.PublicKey;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PublicKeyRepo extends MongoRepository<PublicKey, String> {
 
     Optional<PublicKey> findByUserIdAndIsActiveTrue(String userId);
 
+    List<PublicKey> findByUserIdInAndIsActiveTrue(Collection<String> userIds);
+
 }
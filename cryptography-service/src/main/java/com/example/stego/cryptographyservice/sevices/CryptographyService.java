@@ -4,25 +4,66 @@ import com.example.stego.cryptographyservice.document.PublicKey;
 import com.example.stego.cryptographyservice.model.KeyPairDTO;
 import com.example.stego.cryptographyservice.model.PublicKeyDTO;
 
+import com.example.stego.cryptocommons.SealedPayload;
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+
 import javax.crypto.SecretKey;
+import java.io.IOException;
 import java.io.InputStream;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface CryptographyService {
 
-    KeyPairDTO generatePQCKeys() throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException;
+    KeyPairDTO generatePQCKeys() throws GeneralSecurityException;
 
     PublicKey setPublicKey(String userId, PublicKeyDTO publicKeyDTO);
 
     Optional<PublicKey> getPublicKeyForUser(String userId);
 
+    /**
+     * Active keys of several users at once, in the order asked for; users without an active key are left out.
+     */
+    Map<String, PublicKey> getPublicKeysForUsers(Collection<String> userIds);
+
     SecretKey generateAESKey();
 
     InputStream encryptData(InputStream data, SecretKey secretKey);
 
+    /**
+     * Returns the plaintext stream once the first segment has been authenticated; a later segment that fails
+     * authentication makes the stream throw while it is read.
+     *
+     * @throws IllegalArgumentException if the header is invalid or the first segment fails authentication
+     */
     InputStream decryptData(InputStream encryptedData, SecretKey secretKey);
 
+    /**
+     * Generates an AES-256 key and encapsulates it to a Kyber public key (Base64 X.509).
+     */
+    SecretKeyWithEncapsulation encapsulate(String kemPublicKey) throws GeneralSecurityException;
+
+    /**
+     * Generates an AES-256 key and encapsulates it to the user's active Kyber key.
+     */
+    SecretKeyWithEncapsulation encapsulateForUser(String userId) throws GeneralSecurityException;
+
+    SecretKey decapsulate(String kemPrivateKey, byte[] encapsulation) throws GeneralSecurityException;
+
+    /**
+     * Encrypts, encapsulates and signs a secret stored in file-service, reading it only as the result is read.
+     */
+    SealedPayload sealFile(String secretFileId, String recipientUserId, String senderPrivateKey) throws GeneralSecurityException;
+
+    /**
+     * Verifies and decrypts a hybrid payload read from {@code payload}; the returned stream yields the secret.
+     *
+     * @param payloadLength the declared length, or -1 if unknown
+     * @throws org.springframework.web.server.ResponseStatusException 413 if the payload exceeds the configured maximum
+     */
+    InputStream openPayload(InputStream payload, long payloadLength, String recipientPrivateKey)
+            throws GeneralSecurityException, IOException;
+
 }
@@ -1,108 +1,187 @@
 package com.example.stego.cryptographyservice.sevices.impl;
 
+import com.example.stego.cryptocommons.AesGcm;
+import com.example.stego.cryptocommons.HybridPayload;
+import com.example.stego.cryptocommons.KyberKem;
+import com.example.stego.cryptocommons.PqcKeys;
+import com.example.stego.cryptocommons.SealedPayload;
 import com.example.stego.cryptographyservice.document.PublicKey;
+import com.example.stego.cryptographyservice.keycache.ActiveKeys;
+import com.example.stego.cryptographyservice.keycache.KemKeyCache;
+import com.example.stego.cryptographyservice.keycache.PublicKeyCache;
+import com.example.stego.cryptographyservice.keypool.KeyPairPool;
 import com.example.stego.cryptographyservice.model.KeyPairDTO;
 import com.example.stego.cryptographyservice.model.PublicKeyDTO;
 import com.example.stego.cryptographyservice.repo.PublicKeyRepo;
 import com.example.stego.cryptographyservice.sevices.CryptographyService;
+import com.mongodb.ErrorCategory;
 import lombok.RequiredArgsConstructor;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
-import org.bouncycastle.pqc.jcajce.spec.DilithiumParameterSpec;
-import org.bouncycastle.pqc.jcajce.spec.KyberParameterSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jcajce.SecretKeyWithEncapsulation;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.server.ResponseStatusException;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.GCMParameterSpec;
-import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
-import java.security.*;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class CryptographyServiceImpl implements CryptographyService {
 
-    private static final int AES_KEY_SIZE = 256;
-    private static final int GCM_IV_LENGTH = 12; // 96 bits
-    private static final int GCM_TAG_LENGTH = 128; // bits
-    private static final String AES_GCM_CIPHER = "AES/GCM/NoPadding";
-
-    static {
-        // Add the Bouncy Castle provider for traditional algorithms
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
-        // Add the Bouncy Castle PQC provider for post-quantum algorithms
-        if (Security.getProvider(BouncyCastlePQCProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastlePQCProvider());
-        }
-    }
-
+    private static final int MAX_ROTATION_ATTEMPTS = 3;
     private final PublicKeyRepo publicKeyRepo;
+    private final MongoTemplate mongoTemplate;
+    private final RestClient fileServiceRestClient;
+    private final ForkJoinPool encryptionPool;
+    private final KeyPairPool keyPairPool;
+    private final PublicKeyCache publicKeyCache;
+    private final KemKeyCache kemKeyCache;
+    private final String FILE_SERVICE_DOWNLOAD_URI = "/api/v1/files/{fileId}";
 
-    @Override
-    public KeyPairDTO generatePQCKeys() throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
-        // Generate a key pair using a PQC algorithm
-        var kemGenerator = KeyPairGenerator.getInstance("Kyber", BouncyCastlePQCProvider.PROVIDER_NAME);
-        kemGenerator.initialize(KyberParameterSpec.kyber1024);
-        var kemKeyPair = kemGenerator.generateKeyPair();
-
-        // Generate Dilithium key pair
-        var dsaGenerator = KeyPairGenerator.getInstance("Dilithium", BouncyCastlePQCProvider.PROVIDER_NAME);
-        dsaGenerator.initialize(DilithiumParameterSpec.dilithium5);
-        var dsaKeyPair = dsaGenerator.generateKeyPair();
-
-        return new KeyPairDTO(
-                Base64.getEncoder().encodeToString(kemKeyPair.getPublic().getEncoded()),
-                Base64.getEncoder().encodeToString(kemKeyPair.getPrivate().getEncoded()),
-                Base64.getEncoder().encodeToString(dsaKeyPair.getPublic().getEncoded()),
-                Base64.getEncoder().encodeToString(dsaKeyPair.getPrivate().getEncoded())
-        );
+    @Value("${pqcstego.crypto.max-open-payload-mb:256}")
+    private long maxOpenPayloadMb;
 
+    @Override
+    public KeyPairDTO generatePQCKeys() throws GeneralSecurityException {
+        // Kyber and Dilithium pairs generated in the background; each pair is handed out once and never stored
+        return keyPairPool.take();
     }
 
     @Override
-    @Transactional
     public PublicKey setPublicKey(String userId, PublicKeyDTO publicKeyDTO) {
 
-        // Deactivate existing active keys for this user
-        publicKeyRepo.findByUserIdAndIsActiveTrue(userId).ifPresent(
-                oldKey -> {
-                    oldKey.setActive(false);
-                    publicKeyRepo.save(oldKey);
+        for (int attempt = 1; ; attempt++) {
+            // Create the new active public key; the id and creation time are set here because the bulk insert
+            // neither reports a generated id back nor lets auditing see the key as new
+            var newKey = PublicKey.builder()
+                    .userId(userId)
+                    .kemPublicKey(publicKeyDTO.getKemPublicKey())
+                    .dsaPublicKey(publicKeyDTO.getDsaPublicKey())
+                    .build();
+            newKey.setId(new ObjectId().toHexString());
+            newKey.setCreatedAt(Instant.now());
+
+            try {
+                // Deactivate the current key and insert the new one in a single ordered round-trip
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, PublicKey.class)
+                        .updateMulti(
+                                Query.query(Criteria.where("userId").is(userId).and("isActive").is(true)),
+                                Update.update("isActive", false)
+                        )
+                        .insert(newKey)
+                        .execute();
+
+                // Other replicas hear of the change through the change stream (see KeyCacheConfig)
+                publicKeyCache.invalidate(userId);
+                return newKey;
+            } catch (BulkOperationException e) {
+                // A concurrent rotation inserted its key between our two operations; the partial unique index on
+                // active keys rejected ours, so run again and replace theirs
+                if (attempt >= MAX_ROTATION_ATTEMPTS || !isDuplicateKey(e)) {
+                    throw e;
                 }
-        );
+            }
+        }
 
-        // Create and save the new active public key
-        var newKey = PublicKey.builder()
-                .userId(userId)
-                .kemPublicKey(publicKeyDTO.getKemPublicKey())
-                .dsaPublicKey(publicKeyDTO.getDsaPublicKey())
-                .build();
-        return publicKeyRepo.save(newKey);
+    }
 
+    private static boolean isDuplicateKey(BulkOperationException e) {
+        return e.getErrors().stream().anyMatch(error -> error.getCategory() == ErrorCategory.DUPLICATE_KEY);
     }
 
     @Override
     public Optional<PublicKey> getPublicKeyForUser(String userId) {
-        return publicKeyRepo.findByUserIdAndIsActiveTrue(userId);
+        return activeKeys(userId).map(ActiveKeys::document);
+    }
+
+    @Override
+    public Map<String, PublicKey> getPublicKeysForUsers(Collection<String> userIds) {
+        var found = new LinkedHashMap<String, PublicKey>();
+        var missing = new ArrayList<String>();
+        for (var userId : userIds) {
+            var cached = publicKeyCache.get(userId);
+            found.put(userId, cached == null ? null : cached.document());
+            if (cached == null) {
+                missing.add(userId);
+            }
+        }
+
+        // All cache misses in one $in query
+        if (!missing.isEmpty()) {
+            var stamp = publicKeyCache.stamp();
+            for (var document : publicKeyRepo.findByUserIdInAndIsActiveTrue(missing)) {
+                found.put(document.getUserId(), document);
+                try {
+                    publicKeyCache.put(document.getUserId(), ActiveKeys.parse(document), stamp);
+                } catch (GeneralSecurityException | IllegalArgumentException e) {
+                    log.warn("Active public key of user {} does not parse", document.getUserId(), e);
+                }
+            }
+        }
+
+        found.values().removeIf(Objects::isNull);
+        return found;
+    }
+
+    /**
+     * Read-through lookup of the user's active keys, parsed; only a cache miss queries Mongo.
+     */
+    private Optional<ActiveKeys> activeKeys(String userId) {
+        var cached = publicKeyCache.get(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        var stamp = publicKeyCache.stamp();
+        var document = publicKeyRepo.findByUserIdAndIsActiveTrue(userId);
+        if (document.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            var keys = ActiveKeys.parse(document.get());
+            publicKeyCache.put(userId, keys, stamp);
+            return Optional.of(keys);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            // Keys are stored as uploaded; an unparsable one is still served, just not cached or used
+            log.warn("Active public key of user {} does not parse", userId, e);
+            return Optional.of(new ActiveKeys(document.get(), null, null));
+        }
     }
 
     @Override
     public SecretKey generateAESKey() {
 
         try {
-            var keyGenerator = KeyGenerator.getInstance("AES");
-            keyGenerator.init(AES_KEY_SIZE, new SecureRandom());
-            return keyGenerator.generateKey();
-        } catch (NoSuchAlgorithmException e) {
+            return AesGcm.generateKey();
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Could not generate AES key", e);
         }
 
@@ -111,17 +190,7 @@ public class CryptographyServiceImpl implements CryptographyService {
     @Override
     public InputStream encryptData(InputStream data, SecretKey secretKey) {
         try {
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            new SecureRandom().nextBytes(iv); // Generate a random IV
-            var gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv); // GCM tag length and IV
-
-            var cipher = Cipher.getInstance(AES_GCM_CIPHER, BouncyCastleProvider.PROVIDER_NAME);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
-
-            var cipherInputStream = new CipherInputStream(data, cipher);
-            var ivInputStream = new ByteArrayInputStream(iv);
-
-            return new SequenceInputStream(ivInputStream, cipherInputStream);
+            return AesGcm.encrypt(data, secretKey, AesGcm.DEFAULT_SEGMENT_SIZE, encryptionPool);
         } catch (Exception e) {
             throw new RuntimeException("Error during AES encryption", e);
         }
@@ -129,21 +198,158 @@ public class CryptographyServiceImpl implements CryptographyService {
 
     @Override
     public InputStream decryptData(InputStream encryptedData, SecretKey secretKey) {
+        InputStream plaintext;
+        try {
+            plaintext = AesGcm.decrypt(encryptedData, secretKey);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error during AES decryption", e);
+        }
+
+        // Decrypting the first byte authenticates the whole first segment, so a wrong key or tampered data fails
+        // before a response is under way
+        var verified = new PushbackInputStream(plaintext);
         try {
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            var bytesRead = encryptedData.readNBytes(iv, 0, GCM_IV_LENGTH);
-            if (bytesRead < GCM_IV_LENGTH) {
-                throw new IllegalArgumentException("Invalid encrypted stream: missing IV.");
+            int first = verified.read();
+            if (first >= 0) {
+                verified.unread(first);
             }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid encrypted stream: authentication failed.", e);
+        }
+        return verified;
+    }
 
-            var gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            var cipher = Cipher.getInstance(AES_GCM_CIPHER, BouncyCastleProvider.PROVIDER_NAME);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
+    @Override
+    public SecretKeyWithEncapsulation encapsulate(String kemPublicKey) throws GeneralSecurityException {
+        // Callers send the same recipient keys job after job; parse each only once
+        var encoded = Base64.getDecoder().decode(kemPublicKey);
+        var fingerprint = PqcKeys.fingerprint(encoded);
+        var key = kemKeyCache.get(fingerprint);
+        if (key == null) {
+            key = PqcKeys.decodeKemPublicKey(encoded);
+            kemKeyCache.put(fingerprint, key);
+        }
+        return KyberKem.encapsulate(key);
+    }
 
-            return new CipherInputStream(encryptedData, cipher);
-        } catch (Exception e) {
-            throw new RuntimeException("Error during AES decryption", e);
+    @Override
+    public SecretKeyWithEncapsulation encapsulateForUser(String userId) throws GeneralSecurityException {
+        var kemKey = activeKeys(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User has no active public key."))
+                .kemKey();
+        if (kemKey == null) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "User's public key is invalid.");
+        }
+        return KyberKem.encapsulate(kemKey);
+    }
+
+    @Override
+    public SecretKey decapsulate(String kemPrivateKey, byte[] encapsulation) throws GeneralSecurityException {
+        // Private keys are neither cached nor kept
+        return KyberKem.decapsulate(PqcKeys.decodeKemPrivateKey(kemPrivateKey), encapsulation);
+    }
+
+    @Override
+    public SealedPayload sealFile(
+            String secretFileId,
+            String recipientUserId,
+            String senderPrivateKey
+    ) throws GeneralSecurityException {
+
+        var recipientKemKey = activeKeys(recipientUserId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Recipient has no active public key."))
+                .kemKey();
+        if (recipientKemKey == null) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Recipient's public key is invalid.");
         }
+        var senderDsaKey = PqcKeys.decodeDsaPrivateKey(senderPrivateKey);
+
+        // The download stays open until the sealed payload has been read to the end and closed
+        var secret = fileServiceRestClient.get()
+                .uri(FILE_SERVICE_DOWNLOAD_URI, secretFileId)
+                .exchange((request, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        response.close();
+                        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                                "Download of secret file " + secretFileId + " failed: " + response.getStatusCode());
+                    }
+                    var length = response.getHeaders().getContentLength();
+                    return new DownloadedFile(new FilterInputStream(response.getBody()) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                response.close();
+                            }
+                        }
+                    }, length);
+                }, false);
+
+        try {
+            if (secret.length() < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "file-service did not declare the secret's length.");
+            }
+            return HybridPayload.seal(secret.stream(), secret.length(), recipientKemKey, senderDsaKey);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            closeQuietly(secret.stream());
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openPayload(InputStream payload, long payloadLength, String recipientPrivateKey)
+            throws GeneralSecurityException, IOException {
+
+        var maxBytes = maxOpenPayloadMb * 1024 * 1024;
+        if (payloadLength > maxBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Payload exceeds " + maxOpenPayloadMb + " MB.");
+        }
+        var recipientKemKey = PqcKeys.decodeKemPrivateKey(recipientPrivateKey);
+
+        // The signature covers the whole ciphertext, so all of it has to be at hand before anything is released. It is
+        // spooled to disk and mapped rather than held on the heap; the mapping outlives the channel, and the file is
+        // unlinked when the channel closes
+        var spool = Files.createTempFile("pqcstego-open-", ".payload");
+        try (var channel = FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            long length = spool(payload, channel, maxBytes);
+            return HybridPayload.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), recipientKemKey);
+        }
+    }
+
+    /**
+     * Copies the request body into {@code channel}, refusing it once it is longer than {@code maxBytes}.
+     *
+     * @return the number of bytes written
+     */
+    private long spool(InputStream payload, FileChannel channel, long maxBytes) throws IOException {
+        var buffer = new byte[64 * 1024];
+        long count = 0;
+        int n;
+        while ((n = payload.read(buffer)) != -1) {
+            count += n;
+            if (count > maxBytes) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Payload exceeds " + maxOpenPayloadMb + " MB.");
+            }
+            var chunk = ByteBuffer.wrap(buffer, 0, n);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+        return count;
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private record DownloadedFile(InputStream stream, long length) {
     }
 
 }
@@ -0,0 +1,180 @@
+package com.example.stego.cryptographyservice.keycache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PublicKeyCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private final MutableClock clock = new MutableClock();
+    private final PublicKeyCache cache = new PublicKeyCache(3, TTL, clock);
+
+    @Test
+    void entryExpiresAfterTtl() {
+        var keys = keys();
+        cache.put("alice", keys, cache.stamp());
+
+        clock.advance(TTL.minusMillis(1));
+        assertSame(keys, cache.get("alice"));
+
+        clock.advance(Duration.ofMillis(1));
+        assertNull(cache.get("alice"));
+    }
+
+    @Test
+    void putWithStampTakenBeforeInvalidationIsDropped() {
+        // A lookup read Mongo, then the key was replaced and invalidated, then the lookup tried to cache what it read
+        var stamp = cache.stamp();
+        var staleKeys = keys();
+        cache.invalidate("alice");
+        cache.put("alice", staleKeys, stamp);
+
+        assertNull(cache.get("alice"));
+    }
+
+    @Test
+    void invalidationOfAnotherUserAlsoDropsPendingPut() {
+        // The stamp is a single counter, so it errs on the side of not caching
+        var stamp = cache.stamp();
+        cache.invalidate("bob");
+        cache.put("alice", keys(), stamp);
+
+        assertNull(cache.get("alice"));
+    }
+
+    @Test
+    void putWithFreshStampAfterInvalidationIsCached() {
+        cache.put("alice", keys(), cache.stamp());
+        cache.invalidate("alice");
+        var freshKeys = keys();
+        cache.put("alice", freshKeys, cache.stamp());
+
+        assertSame(freshKeys, cache.get("alice"));
+    }
+
+    @Test
+    void invalidateAllDropsEntriesAndPendingPuts() {
+        cache.put("alice", keys(), cache.stamp());
+        var stamp = cache.stamp();
+        cache.invalidateAll();
+        cache.put("bob", keys(), stamp);
+
+        assertNull(cache.get("alice"));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxEntries() {
+        var alice = keys();
+        cache.put("alice", alice, cache.stamp());
+        cache.put("bob", keys(), cache.stamp());
+        cache.put("carol", keys(), cache.stamp());
+        cache.get("alice");
+        cache.put("dave", keys(), cache.stamp());
+
+        assertSame(alice, cache.get("alice"));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    void concurrentLoadsNeverCacheAReplacedKey() throws Exception {
+        var store = new AtomicReference<>(keys());
+        var stop = new AtomicBoolean();
+        var start = new CountDownLatch(1);
+
+        var loaders = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            loaders.add(Thread.ofPlatform().start(() -> {
+                awaitQuietly(start);
+                while (!stop.get()) {
+                    load(store);
+                }
+            }));
+        }
+
+        start.countDown();
+        int staleReads = 0;
+        for (int rotation = 0; rotation < 20_000; rotation++) {
+            // As setPublicKey does: write the new key, then invalidate
+            var current = keys();
+            store.set(current);
+            cache.invalidate("alice");
+
+            // Until the next rotation, only the current key may be cached
+            for (int read = 0; read < 10; read++) {
+                var cached = cache.get("alice");
+                if (cached != null && cached != current) {
+                    staleReads++;
+                }
+            }
+        }
+        stop.set(true);
+        for (var loader : loaders) {
+            loader.join();
+        }
+
+        assertEquals(0, staleReads, "reads of a replaced key");
+    }
+
+    private void load(AtomicReference<ActiveKeys> store) {
+        if (cache.get("alice") == null) {
+            var stamp = cache.stamp();
+            var loaded = store.get();
+            // Stands in for the rest of the Mongo round trip, during which the key may be replaced
+            Thread.yield();
+            cache.put("alice", loaded, stamp);
+        }
+    }
+
+    private static ActiveKeys keys() {
+        return new ActiveKeys(null, null, null);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.example.stego.cryptographyservice.keypool;
+
+import com.example.stego.cryptographyservice.model.KeyPairDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPairPoolTest {
+
+    private static final int CAPACITY = 8;
+    private static final int LOW_WATERMARK = 3;
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KeyPairPool pool = new KeyPairPool(CAPACITY, LOW_WATERMARK, 2, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void concurrentTakesNeverShareAPair() throws Exception {
+        pool.refill();
+        awaitDepth(CAPACITY);
+
+        // More takers than pooled pairs, all at once: some are served from the pool, the rest generate their own
+        int takers = 16;
+        int takesEach = 4;
+        var start = new CountDownLatch(1);
+        var pairs = new ArrayList<KeyPairDTO>();
+        try (var executor = Executors.newFixedThreadPool(takers)) {
+            var results = new ArrayList<Future<List<KeyPairDTO>>>();
+            for (int i = 0; i < takers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    var taken = new ArrayList<KeyPairDTO>();
+                    for (int take = 0; take < takesEach; take++) {
+                        taken.add(pool.take());
+                    }
+                    return taken;
+                }));
+            }
+            start.countDown();
+            for (var result : results) {
+                pairs.addAll(result.get());
+            }
+        }
+
+        assertEquals(takers * takesEach, pairs.size());
+        assertEquals(pairs.size(), pairs.stream().map(KeyPairDTO::getKemPrivateKey).distinct().count());
+        assertEquals(pairs.size(), pairs.stream().map(KeyPairDTO::getDsaPrivateKey).distinct().count());
+        assertEquals(takers * takesEach, takes("hit") + takes("miss"));
+        assertTrue(takes("hit") >= CAPACITY, "hits " + takes("hit"));
+    }
+
+    @Test
+    void refillsOnceDepthReachesLowWatermark() throws Exception {
+        pool.refill();
+        awaitDepth(CAPACITY);
+
+        // Down to one above the watermark: no refill yet
+        var taken = new HashSet<String>();
+        for (int i = 0; i < CAPACITY - LOW_WATERMARK - 1; i++) {
+            taken.add(pool.take().getKemPrivateKey());
+        }
+        assertEquals(LOW_WATERMARK + 1, depth());
+
+        // The take that leaves the watermark starts the workers, which fill the pool back up
+        taken.add(pool.take().getKemPrivateKey());
+        awaitDepth(CAPACITY);
+
+        // The refilled pairs are new ones
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(taken.add(pool.take().getKemPrivateKey()), "pair handed out twice");
+        }
+        assertEquals(2 * CAPACITY - LOW_WATERMARK, takes("hit"));
+        assertEquals(0, takes("miss"));
+    }
+
+    @Test
+    void emptyPoolStillServesTakes() throws Exception {
+        pool.close();
+
+        var first = pool.take();
+        var second = pool.take();
+
+        assertNotEquals(first.getKemPrivateKey(), second.getKemPrivateKey());
+        assertEquals(2, takes("miss"));
+        assertEquals(0, depth());
+    }
+
+    private void awaitDepth(int depth) {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            while (depth() < depth) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(depth, depth());
+    }
+
+    private int depth() {
+        return (int) meterRegistry.get("pqcstego.keypool.depth").gauge().value();
+    }
+
+    private long takes(String result) {
+        return (long) meterRegistry.get("pqcstego.keypool.takes").tag("result", result).counter().count();
+    }
+
+}
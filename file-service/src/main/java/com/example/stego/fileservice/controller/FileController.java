@@ -51,6 +51,8 @@ public class FileController {
         try {
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(gridFsResource.getContentType()))
+                    // From the GridFS file document; lets clients size the body before reading it
+                    .contentLength(gridFsResource.contentLength())
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename =\"" + gridFsResource.getFilename() + "\"")
                     .body(new InputStreamResource(gridFsResource.getInputStream()));
         } catch (IOException e) {
@@ -0,0 +1,48 @@
+package com.example.stego.fileservice.controller;
+
+import com.example.stego.fileservice.services.FileService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * Uploads from other services, which carry the shared service token instead of a user token, so the owner is named
+ * by the caller.
+ */
+@RestController
+@RequestMapping("/api/v1/internal/files")
+@RequiredArgsConstructor
+public class InternalFileController {
+
+    private final FileService fileService;
+
+    // Raw body: written into GridFS chunk by chunk as it arrives, without multipart spooling to disk
+    @PostMapping(consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, "video/*"})
+    public ResponseEntity<String> uploadFileStream(
+            HttpServletRequest request,
+            @RequestParam("filename") String filename,
+            @RequestParam(value = "ownerUserId", required = false) String ownerUserId) {
+
+        try {
+            var fileId = fileService.storeFile(
+                    request.getInputStream(),
+                    filename,
+                    request.getContentType(),
+                    ownerUserId
+            );
+            return ResponseEntity.status(HttpStatus.CREATED).body(fileId);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store the file:" + e.getMessage(), e);
+        }
+    }
+
+}
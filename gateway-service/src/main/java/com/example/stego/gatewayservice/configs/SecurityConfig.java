@@ -37,7 +37,11 @@ public class SecurityConfig {
                         // 5. Allow the JWK endpoint for public key retrieval
                         .pathMatchers("/.well-known/jwks.json").permitAll()
 
-                        // 6. Secure ALL other routes (SRS Requirement)
+                        // 6. Service-to-service endpoints are never exposed, neither on the configured routes nor on
+                        // the discovery locator's /{SERVICE-ID}/** routes
+                        .pathMatchers("/api/v1/internal/**", "/*/api/v1/internal/**").denyAll()
+
+                        // 7. Secure ALL other routes (SRS Requirement)
                         .anyExchange().authenticated()
                 )
                 .oauth2Login(Customizer.withDefaults()) // Enable GitHub OAuth2 login flow
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
 @Configuration
@@ -25,12 +26,13 @@ public class AppConfig {
         return builder.baseUrl(fileServiceUrl).build();
     }
 
+    // 3. Not load-balanced: client interceptors copy request bodies in memory, so calls that send carrier
+    // bytes pick their instance with the LoadBalancerClient instead
     @Bean
-    public RestClient videoServiceRestClient(
-            RestClient.Builder builder,
-            @Value("${services.video-service-url}") String videoServiceUrl
-    ) {
-        return builder.baseUrl(videoServiceUrl).build();
+    public RestClient streamingRestClient() {
+        return RestClient.builder()
+                .requestFactory(new SimpleClientHttpRequestFactory())
+                .build();
     }
 
 }
@@ -18,6 +18,9 @@ public class KafkaTopicConfig {
     @Value("${pqcstego.topics.job-completion}")
     private String jobCompletionTopic;
 
+    @Value("${pqcstego.topics.job-cancel}")
+    private String jobCancelTopic;
+
     @Bean
     public NewTopic encodeRequestTopic() {
         return TopicBuilder.name(encodeRequestTopic).partitions(3).replicas(1).build();
@@ -33,4 +36,9 @@ public class KafkaTopicConfig {
         return TopicBuilder.name(jobCompletionTopic).partitions(3).replicas(1).build();
     }
 
+    @Bean
+    public NewTopic jobCancelTopic() {
+        return TopicBuilder.name(jobCancelTopic).partitions(3).replicas(1).build();
+    }
+
 }
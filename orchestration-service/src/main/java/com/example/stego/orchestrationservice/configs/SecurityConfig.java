@@ -1,25 +1,52 @@
 package com.example.stego.orchestrationservice.configs;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Must match SecurityConfig.SERVICE_TOKEN_HEADER in video-processing-service
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(org.springframework.security.config.http.SessionCreationPolicy.STATELESS))
-                .authorizeHttpRequests(authorize -> authorize.anyRequest().authenticated())
+                .authorizeHttpRequests(authorize -> authorize
+                        // Job claims from video-processing-service carry the shared service token instead of a user
+                        // token; the gateway refuses these paths
+                        .requestMatchers("/api/v1/internal/**").access(serviceTokenRequired())
+                        .anyRequest().authenticated())
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults()))
                 .build();
     }
 
+    // Without a configured token every internal call is refused
+    private AuthorizationManager<RequestAuthorizationContext> serviceTokenRequired() {
+        var expected = serviceToken.getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            var presented = context.getRequest().getHeader(SERVICE_TOKEN_HEADER);
+            return new AuthorizationDecision(expected.length > 0 && presented != null
+                    && MessageDigest.isEqual(expected, presented.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
 }
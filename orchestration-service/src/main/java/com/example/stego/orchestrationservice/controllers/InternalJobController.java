@@ -0,0 +1,48 @@
+package com.example.stego.orchestrationservice.controllers;
+
+import com.example.stego.orchestrationservice.model.JobClaimRequest;
+import com.example.stego.orchestrationservice.services.JobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+// Called by video-processing-service nodes around each job they consume; guarded by the service token
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/internal/jobs/{jobId}")
+public class InternalJobController {
+
+    private final JobService jobService;
+
+    // 204: run it; 423: another node has it, redeliver later; 409: finished, skip it
+    @PostMapping("/claim")
+    public ResponseEntity<Void> claim(@PathVariable String jobId, @RequestBody JobClaimRequest request) {
+        var status = switch (jobService.claimJob(jobId, request.getNodeId(), Duration.ofSeconds(request.getLeaseSeconds()))) {
+            case CLAIMED -> HttpStatus.NO_CONTENT;
+            case HELD -> HttpStatus.LOCKED;
+            case FINISHED -> HttpStatus.CONFLICT;
+        };
+        return ResponseEntity.status(status).build();
+    }
+
+    // 204: extended; 409: the node lost the claim and must stop without reporting
+    @PostMapping("/renew")
+    public ResponseEntity<Void> renew(@PathVariable String jobId, @RequestBody JobClaimRequest request) {
+        var renewed = jobService.renewJobClaim(jobId, request.getNodeId(), Duration.ofSeconds(request.getLeaseSeconds()));
+        return ResponseEntity.status(renewed ? HttpStatus.NO_CONTENT : HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/release")
+    public ResponseEntity<Void> release(@PathVariable String jobId, @RequestBody JobClaimRequest request) {
+        jobService.releaseJobClaim(jobId, request.getNodeId());
+        return ResponseEntity.noContent().build();
+    }
+
+}
@@ -2,14 +2,17 @@ package com.example.stego.orchestrationservice.controllers;
 
 import com.example.stego.orchestrationservice.document.Job;
 import com.example.stego.orchestrationservice.services.JobService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Map;
 
 @RestController
@@ -18,11 +21,20 @@ public class JobController {
 
     private final JobService jobService;
 
-    @PostMapping("/api/v1/estimate")
+    @PostMapping(value = "/api/v1/estimate", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Map<String, Object>> estimateCapacity(
-            @RequestParam("file") MultipartFile carrierFile) {
+            @RequestParam("file") MultipartFile carrierFile) throws IOException {
         // Note: This endpoint is unauthenticated as it's just an estimation
-        return ResponseEntity.ok(jobService.estimateCapacity(carrierFile));
+        try (var carrier = carrierFile.getInputStream()) {
+            return ResponseEntity.ok(jobService.estimateCapacity(carrier, carrierFile.getSize()));
+        }
+    }
+
+    // Raw video body: only its first bytes are kept and forwarded to video-processing-service
+    @PostMapping(value = "/api/v1/estimate", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, "video/*"})
+    public ResponseEntity<Map<String, Object>> estimateCapacityStream(
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(jobService.estimateCapacity(request.getInputStream(), request.getContentLengthLong()));
     }
 
     @PostMapping("/api/v1/encode")
@@ -59,6 +71,14 @@ public class JobController {
         return ResponseEntity.ok(jobService.getJobStatus(jobId, principal));
     }
 
+    @DeleteMapping("/api/v1/job/{jobId}")
+    public ResponseEntity<Job> cancelJob(
+            @AuthenticationPrincipal OAuth2User principal,
+            @PathVariable String jobId) {
+
+        return ResponseEntity.ok(jobService.cancelJob(jobId, principal));
+    }
+
     @GetMapping("/api/v1/job/{jobId}/download")
     public ResponseEntity<Resource> downloadFile(
             @AuthenticationPrincipal OAuth2User principal,
@@ -40,4 +40,8 @@ public class Job {
     private StorageDetails storage = new StorageDetails();
     private String errorMessage;
 
+    // The video-processing node running the job, until its lease expires; see JobService#claimJob
+    private String claimedBy;
+    private Instant claimExpiresAt;
+
 }
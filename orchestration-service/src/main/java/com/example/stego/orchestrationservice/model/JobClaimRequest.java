@@ -0,0 +1,13 @@
+package com.example.stego.orchestrationservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobClaimRequest {
+    private String nodeId; // Stable id of the video-processing node, its Eureka instance id
+    private long leaseSeconds; // Ignored on release
+}
@@ -0,0 +1,12 @@
+package com.example.stego.orchestrationservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KafkaJobCancel {
+    private String jobId;
+}
@@ -10,7 +10,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class KafkaJobCompletion {
     private String jobId;
-    private JobStatus status; // Will be COMPLETED or FAILED
+    private JobStatus status; // COMPLETED, FAILED or CANCELLED
     private String outputFileGridFsId; // Null if failed
     private String errorMessage; // Null if completed
 }
@@ -0,0 +1,7 @@
+package com.example.stego.orchestrationservice.model.enums;
+
+public enum JobClaimResult {
+    CLAIMED, // The caller runs the job
+    HELD, // Another node holds an unexpired claim; retry once it has released it or its lease has run out
+    FINISHED // Completed, failed or cancelled: nothing to run
+}
@@ -1,5 +1,5 @@
 package com.example.stego.orchestrationservice.model.enums;
 
 public enum JobStatus {
-    PENDING, PROCESSING, COMPLETED, FAILED
+    PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED
 }
@@ -2,11 +2,14 @@ package com.example.stego.orchestrationservice.services;
 
 import com.example.stego.orchestrationservice.document.Job;
 import com.example.stego.orchestrationservice.model.KafkaJobCompletion;
+import com.example.stego.orchestrationservice.model.enums.JobClaimResult;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Map;
 
 public interface JobService {
@@ -17,10 +20,30 @@ public interface JobService {
 
     Job getJobStatus(String jobId, OAuth2User principal);
 
-    Map<String, Object> estimateCapacity(MultipartFile carrierFile);
+    Job cancelJob(String jobId, OAuth2User principal);
+
+    Map<String, Object> estimateCapacity(InputStream carrier, long contentLength);
 
     ResponseEntity<Resource> getDownloadableFile(String jobId, OAuth2User principal);
 
     void handleJobCompletion(KafkaJobCompletion completion);
 
+    /**
+     * Moves a pending job to PROCESSING for {@code nodeId}, or takes over one whose previous node let its lease run
+     * out. A Kafka request delivered to a second node (after a rebalance or a crash) is therefore only run once.
+     */
+    JobClaimResult claimJob(String jobId, String nodeId, Duration lease);
+
+    /**
+     * Extends {@code nodeId}'s claim.
+     *
+     * @return {@code false} if the node no longer holds it
+     */
+    boolean renewJobClaim(String jobId, String nodeId, Duration lease);
+
+    /**
+     * Puts a job {@code nodeId} stopped without finishing back to PENDING, so the next node can claim it at once.
+     */
+    void releaseJobClaim(String jobId, String nodeId);
+
 }
\ No newline at end of file
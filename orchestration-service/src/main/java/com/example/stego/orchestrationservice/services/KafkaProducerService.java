@@ -2,6 +2,7 @@ package com.example.stego.orchestrationservice.services;
 
 import com.example.stego.orchestrationservice.model.KafkaDecodeRequest;
 import com.example.stego.orchestrationservice.model.KafkaEncodeRequest;
+import com.example.stego.orchestrationservice.model.KafkaJobCancel;
 
 public interface KafkaProducerService {
 
@@ -9,4 +10,6 @@ public interface KafkaProducerService {
 
     void sendDecodeRequest(KafkaDecodeRequest kafkaDecodeRequest);
 
+    void sendCancelRequest(KafkaJobCancel kafkaJobCancel);
+
 }
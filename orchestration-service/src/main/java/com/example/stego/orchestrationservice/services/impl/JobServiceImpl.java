@@ -3,7 +3,9 @@ package com.example.stego.orchestrationservice.services.impl;
 import com.example.stego.orchestrationservice.document.Job;
 import com.example.stego.orchestrationservice.model.KafkaDecodeRequest;
 import com.example.stego.orchestrationservice.model.KafkaEncodeRequest;
+import com.example.stego.orchestrationservice.model.KafkaJobCancel;
 import com.example.stego.orchestrationservice.model.KafkaJobCompletion;
+import com.example.stego.orchestrationservice.model.enums.JobClaimResult;
 import com.example.stego.orchestrationservice.model.enums.JobStatus;
 import com.example.stego.orchestrationservice.model.enums.JobType;
 import com.example.stego.orchestrationservice.repos.JobRepository;
@@ -11,8 +13,15 @@ import com.example.stego.orchestrationservice.services.JobService;
 import com.example.stego.orchestrationservice.services.KafkaProducerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,9 +30,14 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
@@ -34,13 +48,31 @@ import java.util.UUID;
 public class JobServiceImpl implements JobService {
 
     private final JobRepository jobRepository;
+    private final MongoTemplate mongoTemplate;
     private final KafkaProducerService kafkaProducerService;
     private final RestClient fileServiceRestClient;
-    private final RestClient videoServiceRestClient;
+    private final RestClient streamingRestClient;
+    private final LoadBalancerClient loadBalancerClient;
 
     private final String FILE_SERVICE_UPLOAD_URI = "/api/v1/internal/files/upload";
     private final String FILE_SERVICE_DOWNLOAD_URI = "/api/v1/internal/files/{fileId}";
     private final String VIDEO_SERVICE_ESTIMATE_URI = "/api/v1/internal/estimate";
+    // Must match EstimateController.CARRIER_LENGTH_HEADER in video-processing-service
+    private static final String CARRIER_LENGTH_HEADER = "X-Carrier-Length";
+    // Must match SecurityConfig.SERVICE_TOKEN_HEADER in video-processing-service
+    private static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    @Value("${services.video-service-url}")
+    private URI videoServiceUrl;
+
+    @Value("${pqcstego.estimate.max-upload-mb:4096}")
+    private long maxEstimateUploadMb;
+
+    @Value("${pqcstego.estimate.probe-window-mb:8}")
+    private int estimateProbeWindowMb;
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
 
     // Helper to get GitHub ID from principal
     private String getGithubId(OAuth2User principal) {
@@ -130,26 +162,80 @@ public class JobServiceImpl implements JobService {
     }
 
     @Override
-    public Map<String, Object> estimateCapacity(MultipartFile carrierFile) {
+    public Job cancelJob(String jobId, OAuth2User principal) {
+        var job = getJobStatus(jobId, principal);
+        if (job.getJobStatus() != JobStatus.PENDING && job.getJobStatus() != JobStatus.PROCESSING) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Job has already finished.");
+        }
+
+        job.setJobStatus(JobStatus.CANCELLED);
+        job.setStatusMessage("Job cancelled.");
+        job.setCompletedAt(Instant.now());
+        jobRepository.save(job);
+
+        // Every video-processing node receives it; the one running the job kills it, the others skip it if it arrives
+        kafkaProducerService.sendCancelRequest(new KafkaJobCancel(jobId));
+        return job;
+    }
+
+    @Override
+    public Map<String, Object> estimateCapacity(InputStream carrier, long contentLength) {
         // This proxies the request to the video-processing-service
         // as it's the only service with ffprobe installed.
+        var maxUploadBytes = maxEstimateUploadMb * 1024 * 1024;
+        if (contentLength > maxUploadBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Carrier exceeds " + maxEstimateUploadMb + " MB.");
+        }
+
         try {
-            var body = new LinkedMultiValueMap<String, Object>();
-            body.add("file", carrierFile.getResource());
+            // Only the header is probed: forward the first bytes and the total size, which formats without a frame
+            // count in their header are extrapolated from. The rest of the upload still has to be read, so count it.
+            var window = carrier.readNBytes(estimateProbeWindowMb * 1024 * 1024);
+            var carrierLength = window.length + countRemaining(carrier, maxUploadBytes - window.length);
 
-            return videoServiceRestClient.post()
-                    .uri(VIDEO_SERVICE_ESTIMATE_URI)
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .body(body)
+            var videoService = loadBalancerClient.choose(videoServiceUrl.getHost());
+            if (videoService == null) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No video-processing-service instance available.");
+            }
+
+            return streamingRestClient.post()
+                    .uri(loadBalancerClient.reconstructURI(videoService, URI.create(VIDEO_SERVICE_ESTIMATE_URI)))
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(CARRIER_LENGTH_HEADER, String.valueOf(carrierLength))
+                    .header(SERVICE_TOKEN_HEADER, serviceToken)
+                    .body(window)
                     .retrieve()
                     .body(new ParameterizedTypeReference<Map<String, Object>>() {
                     });
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RestClientResponseException e) {
+            log.error("Capacity estimation was rejected", e);
+            throw new ResponseStatusException(e.getStatusCode(), "Capacity estimation failed.");
         } catch (Exception e) {
             log.error("Capacity estimation failed", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Capacity estimation failed.");
         }
     }
 
+    /**
+     * Reads the rest of an upload without keeping it.
+     *
+     * @return the number of bytes read
+     */
+    private long countRemaining(InputStream carrier, long maxBytes) throws IOException {
+        var buffer = new byte[64 * 1024];
+        long count = 0;
+        int n;
+        while ((n = carrier.read(buffer)) != -1) {
+            count += n;
+            if (count > maxBytes) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Carrier exceeds " + maxEstimateUploadMb + " MB.");
+            }
+        }
+        return count;
+    }
+
     @Override
     public ResponseEntity<Resource> getDownloadableFile(String jobId, OAuth2User principal) {
         var userId = getGithubId(principal);
@@ -190,11 +276,21 @@ public class JobServiceImpl implements JobService {
         var job = jobRepository.findByJobId(completion.getJobId())
                 .orElseThrow(() -> new RuntimeException("Received completion for unknown jobId: " + completion.getJobId()));
 
+        // A job that finished while its cancellation was on the way still counts as cancelled, and a job reported
+        // twice (by a node that lost its claim) keeps its first outcome
+        if (isFinished(job.getJobStatus())) {
+            log.info("Job {} is already {}, ignoring its {} completion",
+                    completion.getJobId(), job.getJobStatus(), completion.getStatus());
+            return;
+        }
+
         job.setJobStatus(completion.getStatus());
 
         if (completion.getStatus() == JobStatus.COMPLETED) {
             job.getStorage().setOutputFileGridFsId(completion.getOutputFileGridFsId());
             job.setStatusMessage("Job completed successfully.");
+        } else if (completion.getStatus() == JobStatus.CANCELLED) {
+            job.setStatusMessage("Job cancelled.");
         } else {
             job.setErrorMessage(completion.getErrorMessage());
             job.setStatusMessage("Job failed.");
@@ -203,4 +299,72 @@ public class JobServiceImpl implements JobService {
         job.setCompletedAt(Instant.now());
         jobRepository.save(job);
     }
+
+    @Override
+    public JobClaimResult claimJob(String jobId, String nodeId, Duration lease) {
+        var now = Instant.now();
+        // One conditional update, so two nodes racing for the same job cannot both win
+        var claimable = Criteria.where("jobId").is(jobId).orOperator(
+                Criteria.where("jobStatus").is(JobStatus.PENDING),
+                Criteria.where("jobStatus").is(JobStatus.PROCESSING).and("claimExpiresAt").lt(now)
+        );
+        var claimed = mongoTemplate.findAndModify(
+                new Query(claimable),
+                new Update()
+                        .set("jobStatus", JobStatus.PROCESSING)
+                        .set("statusMessage", "Job is being processed.")
+                        .set("claimedBy", nodeId)
+                        .set("claimExpiresAt", now.plus(lease)),
+                FindAndModifyOptions.options().returnNew(true),
+                Job.class
+        );
+        if (claimed != null) {
+            return JobClaimResult.CLAIMED;
+        }
+
+        var job = jobRepository.findByJobId(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found."));
+        if (isFinished(job.getJobStatus())) {
+            return JobClaimResult.FINISHED;
+        }
+        log.info("Job {} is held by {} until {}, not claiming it for {}",
+                jobId, job.getClaimedBy(), job.getClaimExpiresAt(), nodeId);
+        return JobClaimResult.HELD;
+    }
+
+    @Override
+    public boolean renewJobClaim(String jobId, String nodeId, Duration lease) {
+        var result = mongoTemplate.updateFirst(
+                heldBy(jobId, nodeId),
+                new Update().set("claimExpiresAt", Instant.now().plus(lease)),
+                Job.class
+        );
+        return result.getMatchedCount() > 0;
+    }
+
+    @Override
+    public void releaseJobClaim(String jobId, String nodeId) {
+        var result = mongoTemplate.updateFirst(
+                heldBy(jobId, nodeId),
+                new Update()
+                        .set("jobStatus", JobStatus.PENDING)
+                        .set("statusMessage", "Job is waiting to be processed.")
+                        .unset("claimedBy")
+                        .unset("claimExpiresAt"),
+                Job.class
+        );
+        if (result.getMatchedCount() > 0) {
+            log.info("Job {} was released by {}", jobId, nodeId);
+        }
+    }
+
+    private static Query heldBy(String jobId, String nodeId) {
+        return new Query(Criteria.where("jobId").is(jobId)
+                .and("jobStatus").is(JobStatus.PROCESSING)
+                .and("claimedBy").is(nodeId));
+    }
+
+    private static boolean isFinished(JobStatus status) {
+        return status == JobStatus.COMPLETED || status == JobStatus.FAILED || status == JobStatus.CANCELLED;
+    }
 }
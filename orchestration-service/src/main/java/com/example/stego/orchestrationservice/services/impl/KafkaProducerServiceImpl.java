@@ -2,6 +2,7 @@ package com.example.stego.orchestrationservice.services.impl;
 
 import com.example.stego.orchestrationservice.model.KafkaDecodeRequest;
 import com.example.stego.orchestrationservice.model.KafkaEncodeRequest;
+import com.example.stego.orchestrationservice.model.KafkaJobCancel;
 import com.example.stego.orchestrationservice.services.KafkaProducerService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,6 +21,9 @@ public class KafkaProducerServiceImpl implements KafkaProducerService {
     @Value("${pqcstego.topics.request-decode}")
     private String decodeRequestTopic;
 
+    @Value("${pqcstego.topics.job-cancel}")
+    private String jobCancelTopic;
+
     @Override
     public void sendEncodeRequest(KafkaEncodeRequest kafkaEncodeRequest) {
         kafkaTemplate.send(encodeRequestTopic, kafkaEncodeRequest.getJobId(), kafkaEncodeRequest);
@@ -30,4 +34,9 @@ public class KafkaProducerServiceImpl implements KafkaProducerService {
         kafkaTemplate.send(decodeRequestTopic, kafkaDecodeRequest.getJobId(), kafkaDecodeRequest);
     }
 
+    @Override
+    public void sendCancelRequest(KafkaJobCancel kafkaJobCancel) {
+        kafkaTemplate.send(jobCancelTopic, kafkaJobCancel.getJobId(), kafkaJobCancel);
+    }
+
 }
@@ -0,0 +1,40 @@
+package com.example.stego.videoprocessingservice.configs;
+
+import com.example.stego.videoprocessingservice.engine.CompressedDomainEmbedder;
+import com.example.stego.videoprocessingservice.engine.FrameBufferPool;
+import com.example.stego.videoprocessingservice.engine.ParallelFrameEmbedder;
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EmbeddingConfig {
+
+    @Bean
+    public FrameBufferPool frameBufferPool(
+            @Value("${pqcstego.embedding.buffer-pool.max-retained-mb:512}") long maxRetainedMb
+    ) {
+        return new FrameBufferPool(maxRetainedMb * 1024 * 1024);
+    }
+
+    @Bean
+    public ParallelFrameEmbedder parallelFrameEmbedder(
+            @Value("${pqcstego.embedding.parallelism:0}") int parallelism,
+            @Value("${pqcstego.embedding.max-frames-in-flight:8}") int maxFramesInFlight,
+            FrameBufferPool frameBufferPool
+    ) {
+        // 0 means one worker per core; the pool is shared by all jobs on this node
+        var workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ParallelFrameEmbedder(workers, maxFramesInFlight, frameBufferPool);
+    }
+
+    @Bean
+    public CompressedDomainEmbedder compressedDomainEmbedder(
+            ParallelFrameEmbedder parallelFrameEmbedder,
+            FfmpegProcessManager ffmpegProcessManager
+    ) {
+        return new CompressedDomainEmbedder(parallelFrameEmbedder, ffmpegProcessManager);
+    }
+
+}
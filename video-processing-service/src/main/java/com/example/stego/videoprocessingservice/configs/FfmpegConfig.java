@@ -0,0 +1,25 @@
+package com.example.stego.videoprocessingservice.configs;
+
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class FfmpegConfig {
+
+    @Bean
+    public FfmpegProcessManager ffmpegProcessManager(
+            @Value("${pqcstego.ffmpeg.max-processes:0}") int maxProcesses,
+            @Value("${pqcstego.ffmpeg.timeout:30m}") Duration timeout,
+            @Value("${pqcstego.ffmpeg.stderr-tail-lines:50}") int stderrTailLines,
+            @Value("${pqcstego.ffmpeg.warm-probes:2}") int warmProbes
+    ) {
+        // 0 means two per core: a full re-encode runs an extractor and an assembler side by side
+        var processes = maxProcesses > 0 ? maxProcesses : 2 * Runtime.getRuntime().availableProcessors();
+        return new FfmpegProcessManager(processes, timeout, stderrTailLines, warmProbes);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.example.stego.videoprocessingservice.configs;
+
+import com.example.stego.videoprocessingservice.jobs.JobClaimClient;
+import com.example.stego.videoprocessingservice.jobs.JobDispatcher;
+import com.example.stego.videoprocessingservice.jobs.JobNotClaimedException;
+import com.example.stego.videoprocessingservice.jobs.JobSlotsBusyException;
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import com.example.stego.videoprocessingservice.services.JobConsumerService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> jobRequestListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            JobDispatcher jobDispatcher,
+            @Value("${pqcstego.jobs.claim-retry-ms:5000}") long claimRetryMs
+    ) {
+        var factory = new ConcurrentKafkaListenerContainerFactory<Object, Object>();
+        configurer.configure(factory, consumerFactory);
+
+        var containerProperties = factory.getContainerProperties();
+        // Jobs finish in any order; an offset is committed once every earlier record of its partition is done
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setAsyncAcks(true);
+        // Stop delivering the rest of a poll as soon as the dispatcher pauses the container
+        containerProperties.setPauseImmediate(true);
+        // Jobs of partitions handed to another node stop and release their claims before the new owner gets them
+        containerProperties.setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                jobDispatcher.revoke(partitions);
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                jobDispatcher.revoke(partitions);
+            }
+
+        });
+
+        // A record that found every job slot busy is sought back and redelivered until a slot frees up, never
+        // recovered (skipped); the dispatcher's own wait already spaces the attempts out. One whose job another node
+        // still holds is retried the same way, at claim-retry-ms, until that node finishes or its lease runs out.
+        var errorHandler = new DefaultErrorHandler();
+        errorHandler.setBackOffFunction((record, exception) ->
+                switch (NestedExceptionUtils.getMostSpecificCause(exception)) {
+                    case JobSlotsBusyException busy -> new FixedBackOff(0, FixedBackOff.UNLIMITED_ATTEMPTS);
+                    case JobNotClaimedException notClaimed ->
+                            new FixedBackOff(claimRetryMs, FixedBackOff.UNLIMITED_ATTEMPTS);
+                    default -> null;
+                });
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    @Bean
+    public JobClaimClient jobClaimClient(
+            RestClient orchestrationServiceRestClient,
+            @Value("${pqcstego.internal.service-token:}") String serviceToken,
+            @Value("${eureka.instance.instance-id}") String nodeId,
+            @Value("${pqcstego.jobs.claim-lease:2m}") Duration claimLease
+    ) {
+        return new JobClaimClient(orchestrationServiceRestClient, serviceToken, nodeId, claimLease);
+    }
+
+    @Bean
+    public JobDispatcher jobDispatcher(
+            KafkaListenerEndpointRegistry listenerRegistry,
+            FfmpegProcessManager ffmpegProcessManager,
+            JobClaimClient jobClaimClient,
+            @Value("${pqcstego.jobs.max-concurrent:0}") int maxConcurrent,
+            @Value("${pqcstego.jobs.memory-per-job-mb:256}") long memoryPerJobMb,
+            @Value("${pqcstego.jobs.cancelled-retained:1024}") int cancelledRetained,
+            @Value("${pqcstego.jobs.slot-wait-ms:30000}") long slotWaitMs
+    ) {
+        // 0 means as many as both the cores and the heap allow
+        var jobs = maxConcurrent;
+        if (jobs <= 0) {
+            var byMemory = Runtime.getRuntime().maxMemory() / (memoryPerJobMb * 1024 * 1024);
+            jobs = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), byMemory));
+        }
+        return new JobDispatcher(jobs, Duration.ofMillis(slotWaitMs), listenerRegistry, List.of(
+                JobConsumerService.ENCODE_LISTENER_ID,
+                JobConsumerService.DECODE_LISTENER_ID
+        ), ffmpegProcessManager, jobClaimClient, cancelledRetained);
+    }
+
+}
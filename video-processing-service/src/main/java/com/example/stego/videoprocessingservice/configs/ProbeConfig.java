@@ -0,0 +1,16 @@
+package com.example.stego.videoprocessingservice.configs;
+
+import com.example.stego.videoprocessingservice.probe.ProbeCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ProbeConfig {
+
+    @Bean
+    public ProbeCache probeCache(@Value("${pqcstego.probe.cache-entries:1024}") int cacheEntries) {
+        return new ProbeCache(cacheEntries);
+    }
+
+}
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
 @Configuration
@@ -31,4 +32,21 @@ public class RestClientConfig {
         return builder.baseUrl(pqcServiceUrl).build();
     }
 
+    @Bean
+    public RestClient orchestrationServiceRestClient(
+            RestClient.Builder builder,
+            @Value("${services.orchestration-service-url}") String orchestrationServiceUrl
+    ) {
+        return builder.baseUrl(orchestrationServiceUrl).build();
+    }
+
+    // Not load-balanced: client interceptors buffer request bodies in memory, so uploads of a stego video that is
+    // still being encoded pick their instance with the LoadBalancerClient instead
+    @Bean
+    public RestClient streamingRestClient() {
+        return RestClient.builder()
+                .requestFactory(new SimpleClientHttpRequestFactory())
+                .build();
+    }
+
 }
@@ -1,18 +1,31 @@
 package com.example.stego.videoprocessingservice.configs;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Carries pqcstego.internal.service-token on service-to-service calls
+    public static final String SERVICE_TOKEN_HEADER = "X-Service-Token";
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
@@ -20,10 +33,23 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth.
                         requestMatchers("/api/v1/video-process/**").authenticated()
+                        // Service-to-service calls from orchestration-service carry the shared service token instead
+                        // of a user token; the gateway refuses these paths, including on its discovery routes
+                        .requestMatchers("/api/v1/internal/**").access(serviceTokenRequired())
                         .anyRequest().denyAll()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults()))
                 .build();
     }
 
+    // Without a configured token every internal call is refused
+    private AuthorizationManager<RequestAuthorizationContext> serviceTokenRequired() {
+        var expected = serviceToken.getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            var presented = context.getRequest().getHeader(SERVICE_TOKEN_HEADER);
+            return new AuthorizationDecision(expected.length > 0 && presented != null
+                    && MessageDigest.isEqual(expected, presented.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
 }
@@ -0,0 +1,35 @@
+package com.example.stego.videoprocessingservice.controllers;
+
+import com.example.stego.videoprocessingservice.model.CapacityEstimate;
+import com.example.stego.videoprocessingservice.services.CapacityEstimationService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequiredArgsConstructor
+public class EstimateController {
+
+    // Total carrier size, when the body holds only the carrier's first bytes
+    public static final String CARRIER_LENGTH_HEADER = "X-Carrier-Length";
+
+    private final CapacityEstimationService capacityEstimationService;
+
+    // The carrier (or its first bytes) is the raw request body, read straight from the socket by the header-only probe
+    @PostMapping("/api/v1/internal/estimate")
+    public ResponseEntity<CapacityEstimate> estimateCapacity(
+            HttpServletRequest request,
+            @RequestHeader(name = CARRIER_LENGTH_HEADER, required = false) Long carrierLength
+    ) throws IOException, InterruptedException {
+        return ResponseEntity.ok(capacityEstimationService.estimate(
+                request.getInputStream(),
+                carrierLength != null ? carrierLength : request.getContentLengthLong()
+        ));
+    }
+
+}
@@ -0,0 +1,421 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.DoubleStream;
+
+/**
+ * Embeds a payload without re-encoding the whole carrier.
+ * <p>
+ * Only the frames up to the first keyframe after the payload's last frame are decoded, embedded and re-encoded
+ * losslessly ({@code libx264 -qp 0}, so the LSBs survive); every packet from that keyframe on is stream-copied.
+ * Encode time therefore follows the payload size rather than the video length.
+ * <p>
+ * The head and the tail are written to temporary MPEG-TS files and joined by one final mux through the concat
+ * demuxer, so the output is a single transport stream with one PAT/PMT and continuous timestamps. The head is High
+ * 4:4:4 Predictive (lossless) and the tail keeps the carrier's profile; both carry their parameter sets in-band, so
+ * a decoder picks up the tail's at the cut keyframe.
+ * <p>
+ * Frames are embedded in the carrier's native yuv420p layout. The carrier is spooled to a temporary file first,
+ * because the tail has to be read a second time from its cut point; the payload itself is streamed, and the cut point
+ * only needs its declared length. The tail starts exactly one head length after the head, so the splice is seamless,
+ * but only for constant frame rate carriers without open GOPs; others are rejected before anything is encoded.
+ * <p>
+ * The carrier's audio streams are muxed back in untouched, re-encoded to AAC only where MPEG-TS cannot carry the
+ * codec. Subtitles and further video streams are dropped.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CompressedDomainEmbedder {
+
+    private static final String SUPPORTED_CODEC = "h264";
+    private static final Set<String> TS_AUDIO_CODECS = Set.of("aac", "mp2", "mp3", "ac3", "eac3", "dts", "opus");
+
+    private final ParallelFrameEmbedder parallelFrameEmbedder;
+    private final FfmpegProcessManager ffmpegProcessManager;
+    private final Gson gson = new Gson();
+
+    /**
+     * @return whether a carrier with this video codec and pixel format can be embedded into without full re-encoding
+     */
+    public static boolean supports(String codec, String pixFmt) {
+        return SUPPORTED_CODEC.equals(codec) && RawVideoFormat.PIX_FMT.equals(pixFmt);
+    }
+
+    public void embed(
+            InputStream carrierVideoStream,
+            PayloadSource payload,
+            EmbeddingPlanes planes,
+            OutputStream stegoVideoOutputStream,
+            Timer frameReadTimer
+    ) throws IOException, InterruptedException {
+
+        var workDirectory = Files.createTempDirectory("pqcstego-splice-");
+        try {
+            var spool = workDirectory.resolve("carrier.media");
+            Files.copy(carrierVideoStream, spool);
+
+            var streams = probeStreams(spool);
+            var format = streams.video();
+            int embeddableBytes = planes.embeddableBytes(format);
+            var framedPayload = payload.framed(planes.headerFlags());
+            long framesNeeded = Math.ceilDiv(framedPayload.totalBits(), embeddableBytes);
+            var cut = findCutPoint(spool, format, framesNeeded);
+            log.debug("Re-encoding {} of the carrier's frames ({} needed) from pts {}, copying from pts {}",
+                    cut.headFrames(), framesNeeded, cut.headStartTime(), cut.tailStartTime());
+
+            var head = workDirectory.resolve("head.ts");
+            encodeHead(spool, format, embeddableBytes, cut, framedPayload, head, frameReadTimer);
+            Path tail = null;
+            if (cut.tailStartTime() != null) {
+                tail = workDirectory.resolve("tail.ts");
+                copyTail(spool, cut.tailStartTime(), tail);
+            }
+
+            var concatList = workDirectory.resolve("splice.ffconcat");
+            writeConcatList(concatList, head, cut.headFrames() * format.frameDuration(), tail);
+            mux(concatList, cut.headStartTime(), spool, streams.audioCodecs(), stegoVideoOutputStream);
+        } finally {
+            deleteDirectory(workDirectory);
+        }
+    }
+
+    private CarrierStreams probeStreams(Path carrier) throws IOException, InterruptedException {
+        JsonObject json;
+        try (var processes = ffmpegProcessManager.open(1)) {
+            var ffprobe = processes.start("probe", List.of(
+                    "ffprobe",
+                    "-v", "error",
+                    "-show_entries", "stream=codec_type,codec_name,pix_fmt,width,height,avg_frame_rate",
+                    "-of", "json",
+                    carrier.toString()
+            ));
+            try (var stdout = new InputStreamReader(ffprobe.getInputStream(), StandardCharsets.UTF_8)) {
+                json = gson.fromJson(stdout, JsonObject.class);
+            }
+            ffprobe.awaitSuccess();
+        }
+
+        var streams = json == null ? null : json.getAsJsonArray("streams");
+        JsonObject stream = null;
+        var audioCodecs = new ArrayList<String>();
+        if (streams != null) {
+            for (var element : streams) {
+                var candidate = element.getAsJsonObject();
+                var codecType = candidate.has("codec_type") ? candidate.get("codec_type").getAsString() : "";
+                if (codecType.equals("video") && stream == null) {
+                    stream = candidate;
+                } else if (codecType.equals("audio")) {
+                    audioCodecs.add(candidate.has("codec_name") ? candidate.get("codec_name").getAsString() : "");
+                }
+            }
+        }
+        if (stream == null) {
+            throw new IOException("Carrier has no video stream.");
+        }
+        var codec = stream.get("codec_name").getAsString();
+        var pixFmt = stream.get("pix_fmt").getAsString();
+
+        if (!supports(codec, pixFmt)) {
+            throw new IOException("Compressed-domain embedding needs an " + SUPPORTED_CODEC + "/" + RawVideoFormat.PIX_FMT
+                    + " carrier, got " + codec + "/" + pixFmt);
+        }
+        var format = new RawVideoFormat(
+                stream.get("width").getAsInt(),
+                stream.get("height").getAsInt(),
+                stream.get("avg_frame_rate").getAsString()
+        );
+        return new CarrierStreams(format, List.copyOf(audioCodecs));
+    }
+
+    /**
+     * Finds the first keyframe at or after the payload's last frame, counting frames in presentation order.
+     * <p>
+     * The head is decoded in presentation order and re-encoded at the carrier's constant frame rate, while the tail is
+     * copied packet by packet from the keyframe on. The two only meet without duplicated, missing or overlapping
+     * frames if every packet before the cut presents before it, no packet after it does (no open GOP), and the head's
+     * timestamps follow the frame rate. Carriers that break any of this are rejected; use FULL_REENCODE for them.
+     */
+    private CutPoint findCutPoint(Path carrier, RawVideoFormat format, long framesNeeded)
+            throws IOException, InterruptedException {
+
+        double frameDuration = format.frameDuration();
+        if (!(frameDuration > 0) || Double.isInfinite(frameDuration)) {
+            throw new IOException("Carrier has no usable frame rate (" + format.frameRate() + ")");
+        }
+
+        var headTimes = DoubleStream.builder();
+        long headPackets = 0;
+        double latestHeadTime = Double.NEGATIVE_INFINITY;
+        String cutTime = null;
+
+        // Closing the group kills ffprobe: everything after the cut point is irrelevant
+        try (var processes = ffmpegProcessManager.open(1)) {
+            var ffprobe = processes.start("packet-scan", List.of(
+                    "ffprobe",
+                    "-v", "error",
+                    "-select_streams", "v:0",
+                    "-show_entries", "packet=pts_time,flags",
+                    "-of", "compact=p=0",
+                    carrier.toString()
+            ));
+            try (var reader = new BufferedReader(new InputStreamReader(ffprobe.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    var packet = PacketInfo.parse(line);
+                    if (packet == null) {
+                        continue;
+                    }
+
+                    if (cutTime == null) {
+                        if (headPackets >= framesNeeded && packet.keyframe()) {
+                            if (latestHeadTime >= packet.time()) {
+                                throw new IOException("Carrier frames before the keyframe at " + packet.ptsTime()
+                                        + " present after it; use FULL_REENCODE for this carrier");
+                            }
+                            cutTime = packet.ptsTime();
+                            continue;
+                        }
+                        headTimes.add(packet.time());
+                        latestHeadTime = Math.max(latestHeadTime, packet.time());
+                        headPackets++;
+                    } else if (packet.time() < Double.parseDouble(cutTime)) {
+                        // A leading picture: the cut keyframe starts an open GOP that still refers to the head
+                        throw new IOException("Carrier has an open GOP at " + cutTime
+                                + "; use FULL_REENCODE for this carrier");
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (cutTime == null) {
+                ffprobe.awaitSuccess();
+            }
+        }
+
+        if (headPackets < framesNeeded) {
+            throw new IOException("Payload needs " + framesNeeded + " frames but the carrier only has " + headPackets + ".");
+        }
+
+        var times = headTimes.build().sorted().toArray();
+        double startTime = times[0];
+        for (int i = 1; i < times.length; i++) {
+            checkOnFrameGrid(times[i], startTime, i, frameDuration);
+        }
+        if (cutTime != null) {
+            checkOnFrameGrid(Double.parseDouble(cutTime), startTime, times.length, frameDuration);
+        }
+        return new CutPoint(headPackets, String.format(Locale.ROOT, "%.6f", startTime), cutTime);
+    }
+
+    /**
+     * The head is re-encoded at a constant frame rate, so its frames must already be on that grid for the tail's
+     * original timestamps to follow on.
+     */
+    private static void checkOnFrameGrid(double time, double startTime, long frameIndex, double frameDuration)
+            throws IOException {
+        if (Math.abs(time - (startTime + frameIndex * frameDuration)) > frameDuration / 2) {
+            throw new IOException("Carrier frame " + frameIndex + " at " + time
+                    + "s is off its constant frame rate; use FULL_REENCODE for variable frame rate carriers");
+        }
+    }
+
+    private void encodeHead(
+            Path carrier,
+            RawVideoFormat format,
+            int embeddableBytes,
+            CutPoint cut,
+            PayloadCursor payload,
+            Path output,
+            Timer frameReadTimer
+    ) throws IOException, InterruptedException {
+
+        // Closing the group unblocks the embedding task on failure before the executor waits for it
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var processes = ffmpegProcessManager.open(2)) {
+
+            var extractor = processes.start("head-extract", List.of(
+                    "ffmpeg",
+                    "-v", "error",
+                    "-i", carrier.toString(),
+                    "-map", "0:v:0",
+                    "-frames:v", String.valueOf(cut.headFrames()), // presentation order, as counted by the scan
+                    "-f", "rawvideo",
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "pipe:1"
+            ));
+
+            var assembler = processes.start("head-encode", List.of(
+                    "ffmpeg",
+                    "-v", "error",
+                    "-f", "rawvideo",
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "-s", format.size(),
+                    "-r", format.frameRate(),
+                    "-i", "pipe:0",
+                    "-c:v", "libx264",
+                    "-qp", "0",                // lossless, keeps the embedded LSBs intact
+                    "-preset", "ultrafast",
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "-f", "mpegts",
+                    "-y", output.toString()
+            ));
+
+            Future<?> embedding = executor.submit(() -> {
+                try (var extractorStdout = extractor.getInputStream();
+                     var assemblerStdin = assembler.getOutputStream()) {
+                    try {
+                        var frames = new RawFrameReader(extractorStdout, format.frameSize(), frameReadTimer);
+                        parallelFrameEmbedder.embed(frames, payload, assemblerStdin, embeddableBytes);
+                    } catch (Throwable e) {
+                        // Killed before its stdin closes, so no shortened head reaches the output
+                        assembler.destroyForcibly();
+                        throw e;
+                    }
+                }
+                return null;
+            });
+
+            embedding.get();
+            extractor.awaitSuccess();
+            assembler.awaitSuccess();
+        } catch (ExecutionException e) {
+            throw new IOException("Embedding into the re-encoded frames failed", e.getCause());
+        }
+    }
+
+    private void copyTail(Path carrier, String startTime, Path output) throws IOException, InterruptedException {
+        try (var processes = ffmpegProcessManager.open(1)) {
+            var copier = processes.start("tail-copy", List.of(
+                    "ffmpeg",
+                    "-v", "error",
+                    "-ss", startTime,          // exact: the cut point is a keyframe
+                    "-i", carrier.toString(),
+                    "-map", "0:v:0",
+                    "-c", "copy",
+                    "-bsf:v", "h264_mp4toannexb",
+                    "-f", "mpegts",
+                    "-y", output.toString()
+            ));
+            copier.awaitSuccess();
+        }
+    }
+
+    /**
+     * Lists the head and the tail for the concat demuxer. The head's duration is given explicitly, so the tail
+     * follows it after exactly {@code headFrames} frames whatever the head file's container reports.
+     */
+    private static void writeConcatList(Path concatList, Path head, double headDuration, Path tail) throws IOException {
+        var list = new StringBuilder("ffconcat version 1.0\n")
+                .append("file '").append(head.getFileName()).append("'\n");
+        if (tail != null) {
+            list.append(String.format(Locale.ROOT, "duration %.6f\n", headDuration))
+                    .append("file '").append(tail.getFileName()).append("'\n");
+        }
+        Files.writeString(concatList, list, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the spliced video and the carrier's audio as one MPEG-TS stream. The concat demuxer restarts the video
+     * at zero, so it is shifted back to the carrier's first frame time to stay in sync with the audio.
+     */
+    private void mux(
+            Path concatList,
+            String videoStartTime,
+            Path carrier,
+            List<String> audioCodecs,
+            OutputStream output
+    ) throws IOException, InterruptedException {
+
+        var command = new ArrayList<>(List.of(
+                "ffmpeg",
+                "-v", "error",
+                "-itsoffset", videoStartTime,
+                "-f", "concat",
+                "-safe", "0",
+                "-i", concatList.toString(),
+                "-i", carrier.toString(),
+                "-map", "0:v:0",
+                "-c:v", "copy"
+        ));
+        if (!audioCodecs.isEmpty()) {
+            command.addAll(List.of("-map", "1:a"));
+        }
+        for (int i = 0; i < audioCodecs.size(); i++) {
+            command.addAll(List.of("-c:a:" + i, TS_AUDIO_CODECS.contains(audioCodecs.get(i)) ? "copy" : "aac"));
+        }
+        command.addAll(List.of("-f", "mpegts", "pipe:1"));
+
+        try (var processes = ffmpegProcessManager.open(1)) {
+            var muxer = processes.start("splice-mux", command);
+            try (var muxerStdout = muxer.getInputStream()) {
+                muxerStdout.transferTo(output);
+            }
+            muxer.awaitSuccess();
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private record CarrierStreams(RawVideoFormat video, List<String> audioCodecs) {
+    }
+
+    private record CutPoint(long headFrames, String headStartTime, String tailStartTime) {
+    }
+
+    private record PacketInfo(String ptsTime, double time, boolean keyframe) {
+
+        /**
+         * Parses one {@code compact} ffprobe line such as {@code pts_time=1.001000|flags=K__}.
+         *
+         * @return the packet, or {@code null} for lines that are not packets
+         */
+        static PacketInfo parse(String line) throws IOException {
+            String ptsTime = null;
+            String flags = null;
+            for (var field : line.split("\\|")) {
+                if (field.startsWith("pts_time=")) {
+                    ptsTime = field.substring("pts_time=".length());
+                } else if (field.startsWith("flags=")) {
+                    flags = field.substring("flags=".length());
+                }
+            }
+            if (ptsTime == null || flags == null) {
+                return null;
+            }
+            if (ptsTime.equals("N/A")) {
+                throw new IOException("Carrier packets have no presentation timestamps; use FULL_REENCODE for this carrier");
+            }
+            return new PacketInfo(ptsTime, Double.parseDouble(ptsTime), flags.startsWith("K"));
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.example.stego.videoprocessingservice.engine;
+
+/**
+ * Which planes of a yuv420p frame carry payload bits.
+ * <p>
+ * The embedded bytes always form a prefix of the frame (Y comes first), so the first frame holds the
+ * {@link StegoHeader} in either case and its flags tell the reader which variant was used.
+ */
+public enum EmbeddingPlanes {
+
+    // Y, U and V: one payload bit per byte of the frame
+    ALL,
+
+    // Y only: chroma is left untouched, at two thirds of the capacity
+    LUMA;
+
+    /**
+     * @return the number of leading bytes of each frame that carry payload bits, i.e. the per-frame capacity in bits
+     */
+    public int embeddableBytes(RawVideoFormat format) {
+        return this == LUMA ? format.lumaPlaneSize() : format.frameSize();
+    }
+
+    public int headerFlags() {
+        return this == LUMA ? StegoHeader.FLAG_LUMA_ONLY : 0;
+    }
+
+    public static EmbeddingPlanes fromHeaderFlags(int flags) {
+        return (flags & StegoHeader.FLAG_LUMA_ONLY) != 0 ? LUMA : ALL;
+    }
+
+}
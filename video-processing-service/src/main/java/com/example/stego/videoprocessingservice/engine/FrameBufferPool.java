@@ -0,0 +1,57 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-wide pool of direct (off-heap) frame buffers, keyed by buffer size, i.e. by frame resolution.
+ * <p>
+ * Frame buffers are tens of megabytes each for 4K video, and allocating them per job on the heap produces long GC
+ * pauses when many jobs run at once. Buffers handed back through {@link #release(ByteBuffer)} are kept for reuse up
+ * to {@code maxRetainedBytes}; anything above that is dropped and freed by its cleaner.
+ */
+public class FrameBufferPool {
+
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final Map<Integer, Queue<ByteBuffer>> freeBuffers = new ConcurrentHashMap<>();
+
+    public FrameBufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * @return a cleared, little-endian direct buffer of exactly {@code capacity} bytes
+     */
+    public ByteBuffer acquire(int capacity) {
+        var queue = freeBuffers.get(capacity);
+        var buffer = queue != null ? queue.poll() : null;
+        if (buffer != null) {
+            retainedBytes.addAndGet(-capacity);
+            return buffer.clear();
+        }
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+        freeBuffers.computeIfAbsent(capacity, size -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+}
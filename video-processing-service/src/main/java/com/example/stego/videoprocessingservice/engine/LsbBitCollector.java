@@ -0,0 +1,48 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stateful LSB extraction across regions whose lengths are not multiples of eight, such as the Y planes of
+ * consecutive frames. Bits left over at the end of one region are completed by the next, and everything in between
+ * goes through the word-at-a-time {@link LsbCodec#extract(ByteBuffer, int, int, byte[], int)}.
+ */
+public final class LsbBitCollector {
+
+    private int pendingByte;
+    private int pendingBits;
+
+    /**
+     * Extracts the LSBs of {@code carrier[offset, offset + length)}.
+     *
+     * @param out receives the completed payload bytes; needs room for {@code length / 8 + 1} bytes
+     * @return the number of payload bytes written to {@code out}
+     */
+    public int extract(ByteBuffer carrier, int offset, int length, byte[] out) {
+        int pos = offset;
+        int end = offset + length;
+        int count = 0;
+
+        // Finish a payload byte started in the previous region
+        while (pendingBits != 0 && pos < end) {
+            pendingByte = (pendingByte << 1) | (carrier.get(pos++) & 1);
+            if (++pendingBits == 8) {
+                out[count++] = (byte) pendingByte;
+                pendingByte = 0;
+                pendingBits = 0;
+            }
+        }
+
+        int aligned = (end - pos) & ~7;
+        count += LsbCodec.extract(carrier, pos, aligned, out, count);
+        pos += aligned;
+
+        // Fewer than eight bytes left: keep their bits for the next region
+        while (pos < end) {
+            pendingByte = (pendingByte << 1) | (carrier.get(pos++) & 1);
+            pendingBits++;
+        }
+        return count;
+    }
+
+}
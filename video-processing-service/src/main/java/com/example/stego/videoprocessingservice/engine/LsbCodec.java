@@ -0,0 +1,109 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time LSB embedding and extraction over raw frame bytes.
+ * <p>
+ * Every payload bit is stored in the least significant bit of one carrier byte, most significant bit of each payload
+ * byte first. One payload byte therefore spans exactly eight carrier bytes, so the aligned part of a frame is
+ * processed as one 64-bit read-modify-write per payload byte.
+ * <p>
+ * Frames live in (usually direct) {@link ByteBuffer}s; both operations use absolute indexing and leave the buffer's
+ * position and limit untouched.
+ */
+public final class LsbCodec {
+
+    private static final long LSB_CLEAR_MASK = 0xFEFEFEFEFEFEFEFEL;
+    private static final long LSB_MASK = 0x0101010101010101L;
+
+    // Multiplying the isolated LSBs by this constant gathers lane k into bit (63 - k), with no carries in the top byte
+    private static final long GATHER_MULTIPLIER = 0x8040201008040201L;
+
+    // SPREAD[b] holds bit (7 - k) of b in the LSB of byte lane k (little-endian lane order)
+    private static final long[] SPREAD = new long[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            long pattern = 0;
+            for (int k = 0; k < 8; k++) {
+                pattern |= (long) ((b >>> (7 - k)) & 1) << (k * 8);
+            }
+            SPREAD[b] = pattern;
+        }
+    }
+
+    private LsbCodec() {
+    }
+
+    /**
+     * Embeds payload bits into the LSBs of {@code carrier[offset, offset + length)}, starting at payload bit
+     * {@code bitOffset}.
+     *
+     * @return the number of payload bits written, which is 0 once the payload has been fully embedded
+     */
+    public static int embed(ByteBuffer carrier, int offset, int length, byte[] payload, long bitOffset) {
+        long totalBits = (long) payload.length * 8;
+        if (bitOffset >= totalBits || length <= 0) {
+            return 0;
+        }
+
+        carrier.order(ByteOrder.LITTLE_ENDIAN);
+        int bits = (int) Math.min(length, totalBits - bitOffset);
+        int pos = offset;
+        int end = offset + bits;
+        long bit = bitOffset;
+
+        // Head: bring the payload cursor onto a byte boundary
+        while ((bit & 7) != 0 && pos < end) {
+            carrier.put(pos, withLsb(carrier.get(pos), payloadBit(payload, bit)));
+            pos++;
+            bit++;
+        }
+
+        // Body: one payload byte per 8 carrier bytes
+        int byteIndex = (int) (bit >>> 3);
+        while (end - pos >= 8) {
+            carrier.putLong(pos, (carrier.getLong(pos) & LSB_CLEAR_MASK) | SPREAD[payload[byteIndex++] & 0xFF]);
+            pos += 8;
+        }
+        bit = (long) byteIndex << 3;
+
+        // Tail: remaining bits of a partially covered payload byte
+        while (pos < end) {
+            carrier.put(pos, withLsb(carrier.get(pos), payloadBit(payload, bit)));
+            pos++;
+            bit++;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Packs the LSBs of {@code carrier[offset, offset + length)} into payload bytes, eight carrier bytes at a time.
+     * Any trailing carrier bytes that do not form a full payload byte are ignored.
+     *
+     * @return the number of payload bytes written to {@code out}
+     */
+    public static int extract(ByteBuffer carrier, int offset, int length, byte[] out, int outOffset) {
+        carrier.order(ByteOrder.LITTLE_ENDIAN);
+        int count = length >>> 3;
+        int pos = offset;
+        for (int i = 0; i < count; i++) {
+            long lsbs = carrier.getLong(pos) & LSB_MASK;
+            out[outOffset + i] = (byte) ((lsbs * GATHER_MULTIPLIER) >>> 56);
+            pos += 8;
+        }
+        return count;
+    }
+
+    private static int payloadBit(byte[] payload, long bit) {
+        return (payload[(int) (bit >>> 3)] >> (7 - (int) (bit & 7))) & 1;
+    }
+
+    private static byte withLsb(byte carrierByte, int bit) {
+        return (byte) ((carrierByte & 0xFE) | bit);
+    }
+
+}
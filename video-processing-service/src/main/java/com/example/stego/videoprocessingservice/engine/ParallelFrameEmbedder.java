@@ -0,0 +1,226 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipelined LSB embedding: a reader fills frame buffers, a shared pool of workers embeds each frame's slice of the
+ * payload in parallel, and a writer emits the frames in their original order.
+ * <p>
+ * Frame {@code k} always carries payload bits starting at {@code k * embeddableBytes}; the reader takes each frame's
+ * slice from the {@link PayloadCursor} in order, so workers never depend on each other and the payload is only read
+ * as far as the frames in flight. The number of frame buffers per job is capped at {@code maxFramesInFlight}; once all of them are queued
+ * the reader blocks until the writer hands one back, which bounds memory regardless of video length. Frame buffers are
+ * off-heap and borrowed from the node-wide {@link FrameBufferPool}, and frames move through NIO channels.
+ */
+public class ParallelFrameEmbedder implements AutoCloseable {
+
+    private static final PendingFrame END_OF_STREAM = new PendingFrame(null, 0, null);
+    private static final long WRITER_CHECK_INTERVAL_MILLIS = 200;
+
+    private final ExecutorService workers;
+    private final FrameBufferPool frameBufferPool;
+    private final int maxFramesInFlight;
+
+    public ParallelFrameEmbedder(int parallelism, int maxFramesInFlight, FrameBufferPool frameBufferPool) {
+        if (parallelism < 1 || maxFramesInFlight < 1) {
+            throw new IllegalArgumentException("parallelism and maxFramesInFlight must be positive");
+        }
+        this.workers = Executors.newFixedThreadPool(
+                parallelism,
+                Thread.ofPlatform().name("frame-embedder-", 0).daemon().factory()
+        );
+        this.frameBufferPool = frameBufferPool;
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
+    /**
+     * Embeds the payload behind {@code payload} into the rawvideo stream, frame by frame, and writes every frame to
+     * {@code output}.
+     *
+     * @param embeddableBytes number of leading bytes of each frame that carry payload bits
+     */
+    public void embed(
+            RawFrameReader frames,
+            PayloadCursor payload,
+            OutputStream output,
+            int embeddableBytes
+    ) throws IOException, InterruptedException {
+
+        int frameSize = frames.frameSize();
+        var freeBuffers = new ArrayBlockingQueue<ByteBuffer>(maxFramesInFlight);
+        var allocatedBuffers = new ArrayList<ByteBuffer>(maxFramesInFlight);
+        var pending = new ArrayBlockingQueue<PendingFrame>(maxFramesInFlight + 1);
+        var writerFailure = new AtomicReference<Throwable>();
+        var writer = Thread.ofVirtual()
+                .name("frame-writer")
+                .start(() -> {
+                    try {
+                        writeInOrder(pending, freeBuffers, Channels.newChannel(output), writerFailure);
+                    } catch (Throwable e) {
+                        writerFailure.compareAndSet(null, e);
+                    }
+                });
+
+        try {
+            while (writerFailure.get() == null) {
+                var buffer = freeBuffers.poll();
+                if (buffer == null) {
+                    if (allocatedBuffers.size() < maxFramesInFlight) {
+                        buffer = frameBufferPool.acquire(frameSize);
+                        allocatedBuffers.add(buffer);
+                    } else {
+                        buffer = awaitFreeBuffer(freeBuffers, writer, writerFailure); // backpressure
+                        if (buffer == null) {
+                            break;
+                        }
+                    }
+                }
+
+                if (!frames.readFrame(buffer)) {
+                    freeBuffers.offer(buffer);
+                    break;
+                }
+
+                var slice = payload.next(embeddableBytes);
+                pending.put(new PendingFrame(buffer, frameSize, submitEmbedding(buffer, embeddableBytes, slice)));
+            }
+        } finally {
+            pending.offer(END_OF_STREAM); // never blocks: at most maxFramesInFlight frames are queued
+            writer.join();
+            awaitAbandonedFrames(pending);
+            allocatedBuffers.forEach(frameBufferPool::release);
+        }
+
+        var failure = writerFailure.get();
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (failure != null) {
+            throw new IOException("Frame embedding failed", failure);
+        }
+        if (payload.remainingBits() > 0) {
+            // A carrier that ran out of frames must not yield a video whose payload is cut short
+            throw new IOException("Carrier ended with " + payload.remainingBits() + " payload bits not embedded");
+        }
+    }
+
+    /**
+     * Waits for the writer to hand back a buffer, giving up once the writer has failed or stopped, so a dead writer
+     * can never leave the reader blocked.
+     *
+     * @return a free buffer, or {@code null} if the writer will not return one
+     */
+    private static ByteBuffer awaitFreeBuffer(
+            BlockingQueue<ByteBuffer> freeBuffers,
+            Thread writer,
+            AtomicReference<Throwable> writerFailure
+    ) throws InterruptedException {
+        while (true) {
+            var buffer = freeBuffers.poll(WRITER_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (buffer != null) {
+                return buffer;
+            }
+            if (!writer.isAlive()) {
+                writerFailure.compareAndSet(null, new IOException("Frame writer stopped unexpectedly"));
+                return null;
+            }
+            if (writerFailure.get() != null) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Waits for the workers still embedding into frames the writer never took, so their buffers are idle before they
+     * go back to the shared pool.
+     */
+    private static void awaitAbandonedFrames(BlockingQueue<PendingFrame> pending) {
+        boolean interrupted = false;
+        PendingFrame frame;
+        while ((frame = pending.poll()) != null) {
+            while (frame != END_OF_STREAM) {
+                try {
+                    frame.embedding().get();
+                    break;
+                } catch (ExecutionException ignored) {
+                    break; // the frame is not written either way
+                } catch (InterruptedException e) {
+                    interrupted = true; // a single frame's embedding is short; keep waiting
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<?> submitEmbedding(ByteBuffer frame, int length, PayloadCursor.Slice slice) {
+        if (slice == null) {
+            // Frames past the end of the payload go straight to the writer
+            return CompletableFuture.completedFuture(null);
+        }
+        return workers.submit(() -> LsbCodec.embed(frame, 0, length, slice.bytes(), slice.bitOffset()));
+    }
+
+    private static void writeInOrder(
+            BlockingQueue<PendingFrame> pending,
+            BlockingQueue<ByteBuffer> freeBuffers,
+            WritableByteChannel output,
+            AtomicReference<Throwable> failure
+    ) {
+        while (true) {
+            PendingFrame frame;
+            try {
+                frame = pending.take();
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (frame == END_OF_STREAM) {
+                return;
+            }
+
+            try {
+                // Always wait for the worker, so a buffer is never recycled while it is still being written to
+                frame.embedding().get();
+
+                // After a failure keep draining so the reader is never left waiting for a buffer
+                if (failure.get() == null) {
+                    var buffer = frame.buffer().position(0).limit(frame.length());
+                    while (buffer.hasRemaining()) {
+                        output.write(buffer);
+                    }
+                }
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause());
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                freeBuffers.offer(frame.buffer());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private record PendingFrame(ByteBuffer buffer, int length, Future<?> embedding) {
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Hands out consecutive bit ranges of a header-framed payload, one frame's worth at a time, reading the payload
+ * stream only as far as the current frame needs.
+ * <p>
+ * Each {@link Slice} holds just the payload bytes its range touches, plus the offset of its first bit in the first
+ * byte, so it can be passed to {@link LsbCodec#embed} on its own. When a frame's range ends inside a byte, that byte
+ * is kept and starts the next slice. Not thread-safe; slices are taken in frame order by a single reader.
+ */
+public class PayloadCursor {
+
+    private final byte[] header;
+    private final InputStream payload;
+    private final long totalBits;
+
+    private long bitPosition;
+    private byte partialByte;
+
+    PayloadCursor(byte[] header, InputStream payload, long payloadLength) {
+        this.header = header;
+        this.payload = payload;
+        this.totalBits = (header.length + payloadLength) * 8;
+    }
+
+    public long totalBits() {
+        return totalBits;
+    }
+
+    /**
+     * @return the payload bits not handed out yet; anything left once the carrier's frames run out was not embedded
+     */
+    public long remainingBits() {
+        return totalBits - bitPosition;
+    }
+
+    /**
+     * @return the next {@code bits} payload bits (fewer at the end), or {@code null} once the payload is exhausted
+     */
+    public Slice next(int bits) throws IOException {
+        if (bitPosition >= totalBits || bits <= 0) {
+            return null;
+        }
+
+        long end = Math.min(bitPosition + bits, totalBits);
+        long firstByte = bitPosition >>> 3;
+        var bytes = new byte[(int) (((end + 7) >>> 3) - firstByte)];
+
+        int filled = 0;
+        if ((bitPosition & 7) != 0) {
+            bytes[filled++] = partialByte; // shared with the previous slice
+        }
+        fill(bytes, filled, firstByte + filled);
+        if ((end & 7) != 0) {
+            partialByte = bytes[bytes.length - 1];
+        }
+
+        var slice = new Slice(bytes, (int) (bitPosition & 7));
+        bitPosition = end;
+        return slice;
+    }
+
+    private void fill(byte[] bytes, int offset, long streamPosition) throws IOException {
+        // The header is served from memory, the rest straight from the payload stream
+        while (offset < bytes.length && streamPosition < header.length) {
+            bytes[offset++] = header[(int) streamPosition++];
+        }
+        int wanted = bytes.length - offset;
+        if (wanted > 0 && payload.readNBytes(bytes, offset, wanted) < wanted) {
+            throw new EOFException("Payload stream ended before its declared length of "
+                    + (totalBits / 8 - header.length) + " bytes");
+        }
+    }
+
+    /**
+     * Payload bytes for one frame; embedding starts at bit {@code bitOffset} of {@code bytes}.
+     */
+    public record Slice(byte[] bytes, int bitOffset) {
+    }
+
+}
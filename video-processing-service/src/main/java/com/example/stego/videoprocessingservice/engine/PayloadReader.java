@@ -0,0 +1,181 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reassembles an embedded payload from the byte stream decoded out of the carrier LSBs.
+ * <p>
+ * Payloads written with a {@link StegoHeader} are read up to exactly their declared length. Anything that does not
+ * start with a valid header is treated as the legacy format and read until the terminator is found.
+ * <p>
+ * The declared length is not trusted for allocation: its CRC only detects damage, and anyone can forge a header that
+ * claims gigabytes. The buffer grows with the bytes actually decoded, so memory stays bounded by what the carrier
+ * really holds.
+ */
+public final class PayloadReader {
+
+    // Largest array the JVM will reliably allocate
+    private static final int MAX_PAYLOAD_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int INITIAL_FRAMED_CAPACITY = 64 * 1024;
+
+    private final byte[] legacyTerminator;
+    private final byte[] headerBytes = new byte[StegoHeader.LENGTH];
+    private int headerFilled;
+
+    // Framed format
+    private StegoHeader header;
+    private int framedLength;
+    private byte[] framedPayload;
+    private int framedFilled;
+
+    // Legacy format
+    private TerminatorMatcher terminatorMatcher;
+    private ByteArrayOutputStream legacyPayload;
+
+    private byte[] result;
+
+    public PayloadReader(byte[] legacyTerminator) {
+        this.legacyTerminator = legacyTerminator.clone();
+    }
+
+    /**
+     * Feeds decoded payload bytes.
+     *
+     * @return {@code true} once the payload is complete; further input is not needed
+     */
+    public boolean accept(byte[] decoded, int offset, int length) throws IOException {
+        int pos = offset;
+        int end = offset + length;
+
+        if (headerFilled < StegoHeader.LENGTH) {
+            int count = Math.min(StegoHeader.LENGTH - headerFilled, end - pos);
+            System.arraycopy(decoded, pos, headerBytes, headerFilled, count);
+            headerFilled += count;
+            pos += count;
+            if (headerFilled < StegoHeader.LENGTH) {
+                return false;
+            }
+            if (!startFramed()) {
+                terminatorMatcher = new TerminatorMatcher(legacyTerminator);
+                legacyPayload = new ByteArrayOutputStream();
+                if (acceptLegacy(headerBytes, 0, headerBytes.length)) {
+                    return true;
+                }
+            }
+            if (result != null) {
+                return true;
+            }
+        }
+
+        return framedPayload != null
+                ? acceptFramed(decoded, pos, end - pos)
+                : acceptLegacy(decoded, pos, end - pos);
+    }
+
+    /**
+     * Signals the end of the decoded stream. A legacy payload shorter than a header can only be recognised here.
+     *
+     * @return {@code true} if a complete payload was read
+     */
+    public boolean finish() {
+        if (result == null && headerFilled < StegoHeader.LENGTH) {
+            terminatorMatcher = new TerminatorMatcher(legacyTerminator);
+            legacyPayload = new ByteArrayOutputStream();
+            acceptLegacy(headerBytes, 0, headerFilled);
+        }
+        return result != null;
+    }
+
+    /**
+     * @return the complete payload, or {@code null} if it has not been fully read yet
+     */
+    public byte[] payload() {
+        return result;
+    }
+
+    /**
+     * @return {@code true} once enough bytes were seen to tell whether the payload is framed
+     */
+    public boolean headerRead() {
+        return headerFilled == StegoHeader.LENGTH;
+    }
+
+    /**
+     * @return the first {@code length} bytes of a framed payload, or {@code null} until that many have been read
+     */
+    public InputStream framedPrefix(int length) {
+        return framedPayload != null && framedFilled >= length
+                ? new ByteArrayInputStream(framedPayload, 0, length)
+                : null;
+    }
+
+    /**
+     * @return the frame header, or {@code null} for legacy payloads and before {@link #headerRead()}
+     */
+    public StegoHeader header() {
+        return header;
+    }
+
+    private boolean startFramed() throws IOException {
+        var parsed = StegoHeader.parse(headerBytes);
+        if (parsed.isEmpty()) {
+            return false;
+        }
+        header = parsed.get();
+        long payloadLength = header.payloadLength();
+        if (payloadLength > MAX_PAYLOAD_LENGTH) {
+            throw new IOException("Embedded payload of " + payloadLength + " bytes is too large to extract.");
+        }
+        framedLength = (int) payloadLength;
+        framedPayload = new byte[Math.min(framedLength, INITIAL_FRAMED_CAPACITY)];
+        if (framedLength == 0) {
+            result = framedPayload;
+        }
+        return true;
+    }
+
+    private boolean acceptFramed(byte[] decoded, int offset, int length) {
+        int count = Math.min(framedLength - framedFilled, length);
+        if (framedFilled + count > framedPayload.length) {
+            // Doubling keeps the copies amortised; never beyond the declared length
+            long grown = Math.max(framedFilled + count, 2L * framedPayload.length);
+            framedPayload = Arrays.copyOf(framedPayload, (int) Math.min(grown, framedLength));
+        }
+        System.arraycopy(decoded, offset, framedPayload, framedFilled, count);
+        framedFilled += count;
+        if (framedFilled == framedLength) {
+            result = framedPayload;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the bytes allocated for a framed payload so far, which tracks what was decoded, not what was declared
+     */
+    int framedCapacity() {
+        return framedPayload == null ? 0 : framedPayload.length;
+    }
+
+    private boolean acceptLegacy(byte[] decoded, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (terminatorMatcher.accept(decoded[offset + i])
+                    && legacyPayload.size() + i + 1 > legacyTerminator.length) {
+                // Terminator found, keep the payload without it
+                legacyPayload.write(decoded, offset, i + 1);
+                result = Arrays.copyOf(
+                        legacyPayload.toByteArray(),
+                        legacyPayload.size() - legacyTerminator.length
+                );
+                return true;
+            }
+        }
+        legacyPayload.write(decoded, offset, length);
+        return false;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A payload that is read once, front to back, while it is being embedded, so it never has to be held in memory.
+ * <p>
+ * Its length must be known before the first frame is written, because the {@link StegoHeader} in front of it
+ * declares it. Stages that transform the stream on its way in (such as encryption) report the transformed length.
+ */
+public record PayloadSource(InputStream stream, long length) implements Closeable {
+
+    public PayloadSource {
+        if (length < 0) {
+            throw new IllegalArgumentException("Payload length must be known, got " + length);
+        }
+    }
+
+    /**
+     * @return a cursor over this payload with a {@link StegoHeader} carrying {@code headerFlags} in front of it
+     */
+    public PayloadCursor framed(int headerFlags) {
+        return new PayloadCursor(StegoHeader.forPayload(length, headerFlags).toBytes(), stream, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+}
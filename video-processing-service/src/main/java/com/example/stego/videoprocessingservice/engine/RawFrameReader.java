@@ -0,0 +1,100 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a rawvideo stream as exact, whole frames.
+ * <p>
+ * A single read from a pipe returns whatever happens to be buffered, which under load is often less than a frame.
+ * This reader keeps reading until the frame buffer is full (the {@code readNBytes} contract), so frame boundaries
+ * never drift. A truncated trailing frame, which ffmpeg only leaves behind when it is killed, is dropped rather
+ * than forwarded as a malformed frame.
+ * <p>
+ * Frame counts and the time spent waiting for each frame are tracked per stream and, optionally, recorded in a
+ * shared {@link Timer}.
+ */
+@Slf4j
+public class RawFrameReader {
+
+    private final ReadableByteChannel channel;
+    private final int frameSize;
+    private final Timer frameReadTimer;
+
+    private long framesRead;
+    private long truncatedBytes;
+    private long readNanos;
+    private long maxFrameReadNanos;
+
+    public RawFrameReader(InputStream rawFrames, int frameSize, Timer frameReadTimer) {
+        this(Channels.newChannel(rawFrames), frameSize, frameReadTimer);
+    }
+
+    public RawFrameReader(ReadableByteChannel channel, int frameSize, Timer frameReadTimer) {
+        this.channel = channel;
+        this.frameSize = frameSize;
+        this.frameReadTimer = frameReadTimer;
+    }
+
+    /**
+     * Reads the next frame into {@code frame[0, frameSize)}.
+     *
+     * @return {@code true} if a whole frame was read, {@code false} at the end of the stream
+     */
+    public boolean readFrame(ByteBuffer frame) throws IOException {
+        frame.clear().limit(frameSize);
+        long start = System.nanoTime();
+
+        while (frame.hasRemaining()) {
+            if (channel.read(frame) < 0) {
+                break;
+            }
+        }
+
+        if (frame.hasRemaining()) {
+            if (frame.position() > 0) {
+                truncatedBytes += frame.position();
+                log.warn("Dropping truncated trailing frame of {} of {} bytes after {} frames",
+                        frame.position(), frameSize, framesRead);
+            }
+            return false;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        readNanos += elapsed;
+        maxFrameReadNanos = Math.max(maxFrameReadNanos, elapsed);
+        if (frameReadTimer != null) {
+            frameReadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        framesRead++;
+        return true;
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    public long framesRead() {
+        return framesRead;
+    }
+
+    public Stats stats() {
+        return new Stats(
+                framesRead,
+                truncatedBytes,
+                TimeUnit.NANOSECONDS.toMillis(readNanos),
+                TimeUnit.NANOSECONDS.toMicros(maxFrameReadNanos)
+        );
+    }
+
+    public record Stats(long frames, long truncatedBytes, long totalReadMillis, long maxFrameReadMicros) {
+    }
+
+}
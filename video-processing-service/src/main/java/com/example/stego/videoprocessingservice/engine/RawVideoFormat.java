@@ -0,0 +1,43 @@
+package com.example.stego.videoprocessingservice.engine;
+
+/**
+ * Geometry and timing of the yuv420p rawvideo stream exchanged with ffmpeg.
+ * <p>
+ * A yuv420p frame is a full-resolution Y plane followed by U and V planes subsampled 2x2, i.e. 1.5 bytes per pixel
+ * instead of the 4 of RGBA, and it is the layout the carrier is usually coded in, so no colour conversion is needed.
+ *
+ * @param frameRate frame rate as accepted by ffmpeg's {@code -r} option, e.g. {@code "30"} or {@code "30000/1001"}
+ */
+public record RawVideoFormat(int width, int height, String frameRate) {
+
+    public static final String PIX_FMT = "yuv420p";
+
+    public int lumaPlaneSize() {
+        return width * height;
+    }
+
+    public int chromaPlaneSize() {
+        // Odd dimensions round up, as ffmpeg does
+        return ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    public int frameSize() {
+        return lumaPlaneSize() + 2 * chromaPlaneSize();
+    }
+
+    public String size() {
+        return width + "x" + height;
+    }
+
+    /**
+     * @return the duration of one frame in seconds; not finite for a rate ffprobe could not determine ({@code "0/0"})
+     */
+    public double frameDuration() {
+        int slash = frameRate.indexOf('/');
+        if (slash < 0) {
+            return 1 / Double.parseDouble(frameRate);
+        }
+        return Double.parseDouble(frameRate.substring(slash + 1)) / Double.parseDouble(frameRate.substring(0, slash));
+    }
+
+}
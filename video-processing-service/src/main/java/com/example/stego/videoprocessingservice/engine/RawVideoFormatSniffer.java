@@ -0,0 +1,95 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import com.example.stego.videoprocessingservice.process.StderrListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the stream summary ffmpeg prints on stderr and derives the {@link RawVideoFormat} of its rawvideo output.
+ * <p>
+ * This lets the carrier be consumed once, by the extractor itself, instead of first draining it into ffprobe. The
+ * sniffer is fed by the {@link com.example.stego.videoprocessingservice.process.ManagedProcess} that drains stderr,
+ * so ffmpeg can never block on a full pipe once the format is known.
+ */
+@Slf4j
+public class RawVideoFormatSniffer implements StderrListener {
+
+    // "1920x1080" bounded by a separator, so codec tags like "(I420 / 0x30323449)" are not picked up
+    private static final Pattern SIZE = Pattern.compile("(?<=[\\s,])(\\d{1,5})x(\\d{1,5})(?=[\\s,\\[]|$)");
+    private static final Pattern FPS = Pattern.compile("(\\d+(?:\\.\\d+)?) fps");
+
+    // ffmpeg rounds NTSC rates when printing them; map them back to the exact rationals
+    private static final Map<String, String> NTSC_RATES = Map.of(
+            "23.98", "24000/1001",
+            "29.97", "30000/1001",
+            "59.94", "60000/1001"
+    );
+
+    private final CompletableFuture<RawVideoFormat> format = new CompletableFuture<>();
+    private String lastLine = "";
+    private String inputVideoLine;
+    private boolean inOutputSection;
+
+    public CompletableFuture<RawVideoFormat> format() {
+        return format;
+    }
+
+    @Override
+    public void onLine(String line) {
+        if (!line.isBlank()) {
+            lastLine = line;
+        }
+        if (format.isDone()) {
+            return;
+        }
+
+        if (line.startsWith("Output #0")) {
+            inOutputSection = true;
+        } else if (line.contains("Stream #") && line.contains("Video:")) {
+            if (!inOutputSection) {
+                if (inputVideoLine == null) {
+                    inputVideoLine = line;
+                }
+            } else {
+                try {
+                    format.complete(parse(line, inputVideoLine));
+                } catch (RuntimeException e) {
+                    format.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onEnd() {
+        format.completeExceptionally(new IOException("ffmpeg did not report a video stream: " + lastLine));
+    }
+
+    private static RawVideoFormat parse(String outputVideoLine, String inputVideoLine) {
+        var size = SIZE.matcher(outputVideoLine);
+        if (!size.find()) {
+            throw new IllegalStateException("Could not read frame size from ffmpeg output: " + outputVideoLine);
+        }
+
+        // The rawvideo output stream normally echoes the rate; fall back to the decoded input stream otherwise
+        Matcher fps = FPS.matcher(outputVideoLine);
+        if (!fps.find() && (inputVideoLine == null || !(fps = FPS.matcher(inputVideoLine)).find())) {
+            throw new IllegalStateException("Could not read frame rate from ffmpeg output: " + outputVideoLine);
+        }
+
+        var frameRate = NTSC_RATES.getOrDefault(fps.group(1), fps.group(1));
+        var rawVideoFormat = new RawVideoFormat(
+                Integer.parseInt(size.group(1)),
+                Integer.parseInt(size.group(2)),
+                frameRate
+        );
+        log.debug("Detected rawvideo format {} @ {} fps", rawVideoFormat.size(), frameRate);
+        return rawVideoFormat;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned binary frame header written in front of every embedded payload.
+ * <p>
+ * Layout (big-endian, {@value #LENGTH} bytes): magic {@code "PQSV"} (4) | version (1) | flags (1) |
+ * payload length (8) | CRC32C of the preceding 14 bytes (4). Flag bit 0 marks a payload embedded in the Y plane only.
+ * <p>
+ * The header lets the reader stop after exactly {@code payloadLength} bytes instead of scanning for a terminator,
+ * and the CRC keeps random carrier LSBs (or a legacy payload that happens to start with the magic) from being
+ * mistaken for a header.
+ */
+public record StegoHeader(int version, int flags, long payloadLength) {
+
+    public static final int LENGTH = 18;
+    public static final int MAGIC = 0x50515356; // "PQSV"
+    public static final int CURRENT_VERSION = 1;
+    public static final int FLAG_LUMA_ONLY = 0x01;
+
+    private static final int CRC_OFFSET = LENGTH - Integer.BYTES;
+
+    public static StegoHeader forPayload(long payloadLength, int flags) {
+        return new StegoHeader(CURRENT_VERSION, flags, payloadLength);
+    }
+
+    public byte[] toBytes() {
+        var buffer = ByteBuffer.allocate(LENGTH)
+                .putInt(MAGIC)
+                .put((byte) version)
+                .put((byte) flags)
+                .putLong(payloadLength);
+        var crc = new CRC32C();
+        crc.update(buffer.array(), 0, CRC_OFFSET);
+        return buffer.putInt((int) crc.getValue()).array();
+    }
+
+    /**
+     * Parses a header from the first {@value #LENGTH} bytes of {@code bytes}.
+     *
+     * @return the header, or empty if the bytes are not a valid header of a supported version
+     */
+    public static Optional<StegoHeader> parse(byte[] bytes) {
+        if (bytes.length < LENGTH) {
+            return Optional.empty();
+        }
+
+        var buffer = ByteBuffer.wrap(bytes, 0, LENGTH);
+        if (buffer.getInt() != MAGIC) {
+            return Optional.empty();
+        }
+
+        var crc = new CRC32C();
+        crc.update(bytes, 0, CRC_OFFSET);
+        if (buffer.getInt(CRC_OFFSET) != (int) crc.getValue()) {
+            return Optional.empty();
+        }
+
+        int version = buffer.get() & 0xFF;
+        int flags = buffer.get() & 0xFF;
+        long payloadLength = buffer.getLong();
+        if (version != CURRENT_VERSION || payloadLength < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new StegoHeader(version, flags, payloadLength));
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.stego.videoprocessingservice.engine;
+
+/**
+ * Constant-memory rolling matcher that reports when a byte stream ends with a given terminator.
+ * <p>
+ * Uses the Knuth-Morris-Pratt failure table, so every byte is examined in amortised O(1) time and no part of the
+ * stream has to be kept or re-scanned.
+ */
+public final class TerminatorMatcher {
+
+    private final byte[] pattern;
+    private final int[] failure;
+    private int matched;
+
+    public TerminatorMatcher(byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Terminator must not be empty");
+        }
+        this.pattern = pattern.clone();
+        this.failure = new int[pattern.length];
+
+        // failure[i] = length of the longest proper prefix of pattern[0..i] that is also a suffix of it
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = failure[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+    }
+
+    /**
+     * Feeds the next byte of the stream.
+     *
+     * @return {@code true} if the stream now ends with the terminator
+     */
+    public boolean accept(byte b) {
+        while (matched > 0 && pattern[matched] != b) {
+            matched = failure[matched - 1];
+        }
+        if (pattern[matched] == b) {
+            matched++;
+        }
+        if (matched == pattern.length) {
+            matched = failure[matched - 1];
+            return true;
+        }
+        return false;
+    }
+
+    public int length() {
+        return pattern.length;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.example.stego.videoprocessingservice.jobs;
+
+import com.example.stego.videoprocessingservice.configs.SecurityConfig;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Claims jobs in orchestration-service, which owns their status, so that a request Kafka delivers to a second node
+ * (after a rebalance, or after the first node died) is run only once.
+ * <p>
+ * A claim is a lease: the {@link JobDispatcher} renews it while the job runs and releases it when it stops a job
+ * without finishing it. A node that dies stops renewing, and its jobs can be claimed again once their leases run out.
+ */
+public class JobClaimClient {
+
+    private static final String CLAIM_URI = "/api/v1/internal/jobs/{jobId}/claim";
+    private static final String RENEW_URI = "/api/v1/internal/jobs/{jobId}/renew";
+    private static final String RELEASE_URI = "/api/v1/internal/jobs/{jobId}/release";
+
+    public enum Claim {
+        CLAIMED,
+        HELD_ELSEWHERE,
+        FINISHED
+    }
+
+    private final RestClient orchestrationServiceRestClient;
+    private final String serviceToken;
+    @Getter
+    private final String nodeId;
+    @Getter
+    private final Duration lease;
+
+    public JobClaimClient(RestClient orchestrationServiceRestClient, String serviceToken, String nodeId, Duration lease) {
+        if (lease.toSeconds() < 3) {
+            throw new IllegalArgumentException("A claim lease must be at least 3 seconds, got " + lease);
+        }
+        this.orchestrationServiceRestClient = orchestrationServiceRestClient;
+        this.serviceToken = serviceToken;
+        this.nodeId = nodeId;
+        this.lease = lease;
+    }
+
+    public Claim claim(String jobId) {
+        var status = post(CLAIM_URI, jobId);
+        if (status.isSameCodeAs(HttpStatus.NO_CONTENT)) {
+            return Claim.CLAIMED;
+        } else if (status.isSameCodeAs(HttpStatus.LOCKED)) {
+            return Claim.HELD_ELSEWHERE;
+        } else if (status.isSameCodeAs(HttpStatus.CONFLICT)) {
+            return Claim.FINISHED;
+        }
+        throw new IllegalStateException("Claiming job " + jobId + " failed: " + status);
+    }
+
+    /**
+     * @return {@code false} if this node no longer holds the job
+     */
+    public boolean renew(String jobId) {
+        var status = post(RENEW_URI, jobId);
+        if (status.isSameCodeAs(HttpStatus.NO_CONTENT)) {
+            return true;
+        } else if (status.isSameCodeAs(HttpStatus.CONFLICT)) {
+            return false;
+        }
+        throw new IllegalStateException("Renewing the claim of job " + jobId + " failed: " + status);
+    }
+
+    public void release(String jobId) {
+        var status = post(RELEASE_URI, jobId);
+        if (status.isError()) {
+            throw new IllegalStateException("Releasing job " + jobId + " failed: " + status);
+        }
+    }
+
+    private HttpStatusCode post(String uri, String jobId) {
+        return orchestrationServiceRestClient.post()
+                .uri(uri, jobId)
+                .header(SecurityConfig.SERVICE_TOKEN_HEADER, serviceToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("nodeId", nodeId, "leaseSeconds", lease.toSeconds()))
+                .exchange((request, response) -> response.getStatusCode());
+    }
+
+}
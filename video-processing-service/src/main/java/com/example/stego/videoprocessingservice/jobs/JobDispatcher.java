@@ -0,0 +1,298 @@
+package com.example.stego.videoprocessingservice.jobs;
+
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs consumed jobs on virtual threads, at most {@code maxConcurrentJobs} at a time.
+ * <p>
+ * The listener containers are paused while every slot is taken, so records stay in Kafka (and on other nodes'
+ * partitions after a rebalance) instead of piling up here, and a slow job only holds its own slot. A record is
+ * acknowledged once its job has finished, successfully or not; the containers commit offsets out of order. A record
+ * that finds no slot within {@code slotWait} is handed back with a {@link JobSlotsBusyException} rather than holding
+ * the consumer thread, so that the consumer keeps polling within {@code max.poll.interval.ms}.
+ * <p>
+ * {@link #cancel(String)} kills the job's ffmpeg processes and interrupts its thread. Cancelled job ids are remembered
+ * for a while, so a request that is still in Kafka when its cancellation arrives is skipped once it is consumed.
+ * <p>
+ * Every job is claimed through the {@link JobClaimClient} before it starts, and its claim is renewed while it runs.
+ * When a rebalance takes a partition away, {@link #revoke(Collection)} stops that partition's jobs, releases their
+ * claims and leaves their records unacknowledged, so the partition's next owner runs them from the start instead of
+ * a second time alongside this node.
+ */
+@Slf4j
+public class JobDispatcher implements AutoCloseable {
+
+    // How long a rebalance waits for revoked jobs to stop and release their claims
+    private static final Duration REVOKE_WAIT = Duration.ofSeconds(10);
+
+    @Getter
+    private final int maxConcurrentJobs;
+    private final Semaphore slots;
+    private final Duration slotWait;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final List<String> listenerIds;
+    private final FfmpegProcessManager ffmpegProcessManager;
+    private final JobClaimClient jobClaims;
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    private final Map<String, Abandonment> abandonedJobs = new ConcurrentHashMap<>();
+    private final Set<String> cancelledJobs;
+    private final ScheduledExecutorService claimRenewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-claim-renewer").daemon().factory()
+    );
+
+    public JobDispatcher(
+            int maxConcurrentJobs,
+            Duration slotWait,
+            KafkaListenerEndpointRegistry listenerRegistry,
+            List<String> listenerIds,
+            FfmpegProcessManager ffmpegProcessManager,
+            JobClaimClient jobClaims,
+            int cancelledJobsRetained
+    ) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.slots = new Semaphore(maxConcurrentJobs);
+        this.slotWait = slotWait;
+        this.listenerRegistry = listenerRegistry;
+        this.listenerIds = listenerIds;
+        this.ffmpegProcessManager = ffmpegProcessManager;
+        this.jobClaims = jobClaims;
+        this.cancelledJobs = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cancelledJobsRetained;
+            }
+        }));
+
+        // Three renewals per lease, so one failed call does not lose a claim
+        long renewMillis = jobClaims.getLease().toMillis() / 3;
+        claimRenewer.scheduleWithFixedDelay(this::renewClaims, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Claims the job and starts it on its own virtual thread, with {@link FfmpegProcessManager#JOB_ID} bound to
+     * {@code jobId}. Called from a listener thread; blocks only if a record arrives before a pause took effect, and
+     * then for at most {@code slotWait}. A job that has already finished elsewhere is acknowledged without running.
+     *
+     * @param partition the record's partition, whose revocation stops the job
+     * @throws JobSlotsBusyException if no slot freed up in time; the record is not acknowledged
+     * @throws JobNotClaimedException if the job could not be claimed yet; the record is not acknowledged
+     */
+    public void dispatch(String jobId, TopicPartition partition, Job job, Acknowledgment acknowledgment) {
+        try {
+            if (!slots.tryAcquire(slotWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new JobSlotsBusyException(jobId, slotWait);
+            }
+        } catch (InterruptedException e) {
+            // Container is stopping; the record is not acknowledged and will be redelivered
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        JobClaimClient.Claim claim;
+        try {
+            claim = jobClaims.claim(jobId);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw new JobNotClaimedException(jobId, e);
+        }
+        if (claim != JobClaimClient.Claim.CLAIMED) {
+            slots.release();
+            if (claim == JobClaimClient.Claim.HELD_ELSEWHERE) {
+                throw new JobNotClaimedException(jobId, null);
+            }
+            log.info("Job {} has already finished, skipping its request", jobId);
+            acknowledgment.acknowledge();
+            return;
+        }
+        pauseIfSaturated();
+
+        var thread = Thread.ofVirtual().name("job-" + jobId).unstarted(() -> {
+            var reported = new boolean[1];
+            try {
+                ScopedValue.where(FfmpegProcessManager.JOB_ID, jobId).run(() -> reported[0] = job.run());
+            } finally {
+                runningJobs.remove(jobId);
+                var abandonment = abandonedJobs.remove(jobId);
+                if (abandonment == Abandonment.REVOKED && !reported[0]) {
+                    // Left unacknowledged: the partition's next owner gets the record and claims the job again
+                    releaseClaim(jobId);
+                } else {
+                    acknowledgment.acknowledge();
+                }
+                slots.release();
+                resumeIfAvailable();
+            }
+        });
+        runningJobs.put(jobId, new RunningJob(thread, partition));
+        thread.start();
+    }
+
+    /**
+     * Stops the jobs of partitions this node no longer owns and waits, for a bounded time, until they have released
+     * their claims. Called on the consumer thread during a rebalance, before the partitions are handed on.
+     */
+    public void revoke(Collection<TopicPartition> partitions) {
+        var stopping = new ArrayList<Thread>();
+        runningJobs.forEach((jobId, running) -> {
+            if (partitions.contains(running.partition())) {
+                log.info("Partition {} was revoked, handing job {} back", running.partition(), jobId);
+                stopping.add(abandon(jobId, Abandonment.REVOKED));
+            }
+        });
+
+        long deadline = System.nanoTime() + REVOKE_WAIT.toNanos();
+        try {
+            for (var thread : stopping) {
+                long remaining = deadline - System.nanoTime();
+                if (thread != null && (remaining <= 0 || !thread.join(Duration.ofNanos(remaining)))) {
+                    log.warn("Revoked jobs did not stop within {}; their claims run out with their leases", REVOKE_WAIT);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the job if it runs on this node: its ffmpeg processes are killed and its thread is interrupted, so whatever
+     * pipe or transfer it waits on fails and the job ends as cancelled.
+     *
+     * @return whether the job was running here
+     */
+    public boolean cancel(String jobId) {
+        cancelledJobs.add(jobId);
+        var running = runningJobs.get(jobId);
+        if (running == null) {
+            return false;
+        }
+        ffmpegProcessManager.cancel(jobId);
+        running.thread().interrupt();
+        return true;
+    }
+
+    public boolean isCancelled(String jobId) {
+        return cancelledJobs.contains(jobId);
+    }
+
+    /**
+     * @return whether the job was stopped because this node lost its partition or its claim; such a job must not
+     * report an outcome, since another node runs it
+     */
+    public boolean isAbandoned(String jobId) {
+        return abandonedJobs.containsKey(jobId);
+    }
+
+    public int runningJobs() {
+        return maxConcurrentJobs - slots.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        claimRenewer.shutdownNow();
+    }
+
+    private Thread abandon(String jobId, Abandonment abandonment) {
+        abandonedJobs.put(jobId, abandonment);
+        var running = runningJobs.get(jobId);
+        if (running == null) {
+            abandonedJobs.remove(jobId);
+            return null;
+        }
+        ffmpegProcessManager.cancel(jobId);
+        running.thread().interrupt();
+        return running.thread();
+    }
+
+    private void renewClaims() {
+        for (var jobId : runningJobs.keySet()) {
+            try {
+                if (!jobClaims.renew(jobId)) {
+                    log.warn("Job {} lost its claim, stopping it without reporting", jobId);
+                    abandon(jobId, Abandonment.CLAIM_LOST);
+                }
+            } catch (RuntimeException e) {
+                // The lease outlasts a few failed renewals; the next round tries again
+                log.warn("Could not renew the claim of job {}", jobId, e);
+            }
+        }
+    }
+
+    private void releaseClaim(String jobId) {
+        try {
+            jobClaims.release(jobId);
+        } catch (RuntimeException e) {
+            log.warn("Could not release job {}; it can be claimed again once its lease runs out", jobId, e);
+        }
+    }
+
+    private synchronized void pauseIfSaturated() {
+        if (slots.availablePermits() > 0) {
+            return;
+        }
+        for (var id : listenerIds) {
+            var container = listenerRegistry.getListenerContainer(id);
+            if (container != null && !container.isPauseRequested()) {
+                log.info("All {} job slots are busy, pausing {}", maxConcurrentJobs, id);
+                container.pause();
+            }
+        }
+    }
+
+    private synchronized void resumeIfAvailable() {
+        if (slots.availablePermits() == 0) {
+            return;
+        }
+        for (var id : listenerIds) {
+            var container = listenerRegistry.getListenerContainer(id);
+            if (container != null && container.isPauseRequested()) {
+                log.info("Job slot freed, resuming {}", id);
+                container.resume();
+            }
+        }
+    }
+
+    /**
+     * A consumed job, run once its claim is held.
+     */
+    @FunctionalInterface
+    public interface Job {
+
+        /**
+         * @return whether the job reported an outcome; {@code false} if it stopped without one because it was
+         * abandoned
+         */
+        boolean run();
+
+    }
+
+    private record RunningJob(Thread thread, TopicPartition partition) {
+    }
+
+    private enum Abandonment {
+        // Its partition moved to another node, which runs the job from the start
+        REVOKED,
+        // Its lease ran out and another node claimed it
+        CLAIM_LOST
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.stego.videoprocessingservice.jobs;
+
+/**
+ * Thrown on the listener thread when a job could not be claimed yet, because another node holds it or because
+ * orchestration-service could not be reached; like {@link JobSlotsBusyException}, the record is redelivered.
+ */
+public class JobNotClaimedException extends RuntimeException {
+
+    public JobNotClaimedException(String jobId, Throwable cause) {
+        super(cause == null
+                ? "Job " + jobId + " is claimed by another node, redelivering"
+                : "Could not claim job " + jobId + ", redelivering", cause);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.stego.videoprocessingservice.jobs;
+
+import java.time.Duration;
+
+/**
+ * Thrown on the listener thread when no job slot freed up in time; the container's error handler seeks back, so the
+ * record is redelivered instead of being acknowledged or dropped.
+ */
+public class JobSlotsBusyException extends RuntimeException {
+
+    public JobSlotsBusyException(String jobId, Duration waited) {
+        super("No job slot freed up within " + waited + " for job " + jobId + ", redelivering");
+    }
+
+}
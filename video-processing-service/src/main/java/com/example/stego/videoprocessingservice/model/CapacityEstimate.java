@@ -0,0 +1,25 @@
+package com.example.stego.videoprocessingservice.model;
+
+import com.example.stego.videoprocessingservice.engine.EmbeddingPlanes;
+
+import java.util.List;
+
+/**
+ * How many payload bytes a carrier can hold in each embedding mode.
+ *
+ * @param exact {@code false} when the frame count, and so every capacity, was extrapolated from the header
+ */
+public record CapacityEstimate(
+        VideoProbe video,
+        EmbeddingPlanes planes,
+        boolean exact,
+        List<ModeCapacity> modes
+) {
+
+    /**
+     * @param capacityBytes secret bytes that fit, once sealed into a hybrid payload and framed by the stego header
+     */
+    public record ModeCapacity(EmbeddingMode mode, boolean supported, long capacityBytes) {
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.example.stego.videoprocessingservice.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum EmbeddingMode {
+
+    // Decode every frame, embed, and re-encode the whole video
+    FULL_REENCODE("mp4", "video/mp4"),
+
+    // Decode and losslessly re-encode only the frames the payload needs, stream-copy the rest
+    COMPRESSED_DOMAIN("ts", "video/mp2t");
+
+    private final String containerFormat;
+    private final String contentType;
+
+}
@@ -0,0 +1,14 @@
+package com.example.stego.videoprocessingservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KafkaJobCancel {
+
+    private String jobId;
+
+}
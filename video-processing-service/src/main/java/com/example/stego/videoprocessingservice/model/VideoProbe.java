@@ -0,0 +1,27 @@
+package com.example.stego.videoprocessingservice.model;
+
+import com.example.stego.videoprocessingservice.engine.RawVideoFormat;
+
+/**
+ * What capacity estimation needs to know about a carrier's video stream.
+ *
+ * @param frameRate       exact rate as reported by ffprobe, e.g. {@code "30000/1001"}
+ * @param frameCountExact {@code false} when the count was extrapolated from the probed header window
+ */
+public record VideoProbe(
+        String containerFormat,
+        String codec,
+        String pixFmt,
+        int width,
+        int height,
+        String frameRate,
+        double durationSeconds,
+        long frameCount,
+        boolean frameCountExact
+) {
+
+    public RawVideoFormat rawVideoFormat() {
+        return new RawVideoFormat(width, height, frameRate);
+    }
+
+}
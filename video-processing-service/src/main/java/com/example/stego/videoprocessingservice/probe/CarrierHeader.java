@@ -0,0 +1,123 @@
+package com.example.stego.videoprocessingservice.probe;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The part of a carrier that ffprobe needs to describe its video stream.
+ * <p>
+ * Only the first {@code windowBytes} are kept. For MP4/MOV the top-level boxes are walked instead, wherever the
+ * {@code moov} box is, and only {@code ftyp} + {@code moov} are kept: boxes in between, i.e. {@code mdat}, are
+ * skipped over without being buffered.
+ *
+ * @param probeBytes   what to feed ffprobe
+ * @param window       the first bytes of the carrier
+ * @param moovOnly     {@code probeBytes} are the MP4 {@code ftyp} and {@code moov} boxes
+ * @param wholeCarrier the carrier ended inside the window
+ */
+public record CarrierHeader(byte[] probeBytes, byte[] window, boolean moovOnly, boolean wholeCarrier) {
+
+    private static final int FTYP = 0x66747970;
+    private static final int MOOV = 0x6D6F6F76;
+
+    /**
+     * @param carrierLength total carrier size if known, otherwise -1. A stream that ends before it holds only the
+     *                      carrier's first bytes (e.g. a probe window forwarded on its own), not the whole carrier.
+     */
+    public static CarrierHeader read(InputStream carrier, long carrierLength, int windowBytes, int maxMoovBytes)
+            throws IOException {
+        var window = carrier.readNBytes(windowBytes);
+        int next = window.length < windowBytes ? -1 : carrier.read();
+        if (next == -1 && (carrierLength < 0 || window.length >= carrierLength)) {
+            return new CarrierHeader(window, window, false, true);
+        }
+
+        if (next != -1 && window.length >= 8 && readInt(window, 4) == FTYP) {
+            var rest = new SequenceInputStream(new ByteArrayInputStream(new byte[]{(byte) next}), carrier);
+            var moov = ftypAndMoov(window, rest, maxMoovBytes);
+            if (moov != null) {
+                return new CarrierHeader(moov, window, true, false);
+            }
+        }
+        return new CarrierHeader(window, window, false, false);
+    }
+
+    /**
+     * @return SHA-256 of the probed bytes, which identifies the carrier for caching
+     */
+    public String contentHash() {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(probeBytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return {@code ftyp} followed by {@code moov}, or {@code null} if there is no {@code moov} box within reach
+     */
+    private static byte[] ftypAndMoov(byte[] window, InputStream rest, int maxMoovBytes) throws IOException {
+        var in = new DataInputStream(new SequenceInputStream(new ByteArrayInputStream(window), rest));
+        var header = new ByteArrayOutputStream();
+        var out = new DataOutputStream(header);
+
+        try {
+            while (true) {
+                long size = in.readInt() & 0xFFFFFFFFL;
+                int type = in.readInt();
+                int headerLength = 8;
+                if (size == 1) {
+                    size = in.readLong();
+                    headerLength = 16;
+                } else if (size == 0) {
+                    // The box runs to the end of the file, so no moov follows it
+                    return null;
+                }
+                if (size < headerLength) {
+                    return null;
+                }
+
+                if (type != FTYP && type != MOOV) {
+                    in.skipNBytes(size - headerLength);
+                    continue;
+                }
+                if (size > maxMoovBytes) {
+                    return null;
+                }
+                if (headerLength == 16) {
+                    out.writeInt(1);
+                    out.writeInt(type);
+                    out.writeLong(size);
+                } else {
+                    out.writeInt((int) size);
+                    out.writeInt(type);
+                }
+                var body = in.readNBytes((int) (size - headerLength));
+                if (body.length < size - headerLength) {
+                    return null;
+                }
+                out.write(body);
+                if (type == MOOV) {
+                    return header.toByteArray();
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+}
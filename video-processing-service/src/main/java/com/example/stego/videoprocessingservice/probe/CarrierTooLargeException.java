@@ -0,0 +1,11 @@
+package com.example.stego.videoprocessingservice.probe;
+
+import java.io.IOException;
+
+public class CarrierTooLargeException extends IOException {
+
+    public CarrierTooLargeException(long maxBytes) {
+        super("Carrier exceeds the limit of " + maxBytes + " bytes");
+    }
+
+}
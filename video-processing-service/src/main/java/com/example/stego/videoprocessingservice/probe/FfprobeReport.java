@@ -0,0 +1,135 @@
+package com.example.stego.videoprocessingservice.probe;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The fields of {@link #PROBE_ENTRIES} for one video stream, read from ffprobe's JSON output.
+ * <p>
+ * The output is read token by token, keeping only these fields; no JSON tree or map is built.
+ */
+public record FfprobeReport(
+        String formatName,
+        double formatDuration,
+        String codec,
+        String pixFmt,
+        int width,
+        int height,
+        String avgFrameRate,
+        String realFrameRate,
+        double streamDuration,
+        long frameCount,
+        long readPackets
+) {
+
+    public static final String PROBE_ENTRIES =
+            "stream=codec_name,pix_fmt,width,height,avg_frame_rate,r_frame_rate,duration,nb_frames,nb_read_packets"
+                    + ":format=format_name,duration";
+
+    /**
+     * @return the report, or {@code null} if ffprobe listed no stream
+     */
+    public static FfprobeReport parse(Reader json) throws IOException {
+        var builder = new Builder();
+        var seenStream = false;
+
+        try (var reader = new JsonReader(json)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "streams" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (seenStream) {
+                                reader.skipValue();
+                            } else {
+                                readFields(reader, builder, false);
+                                seenStream = true;
+                            }
+                        }
+                        reader.endArray();
+                    }
+                    case "format" -> readFields(reader, builder, true);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return seenStream ? builder.build() : null;
+    }
+
+    private static void readFields(JsonReader reader, Builder builder, boolean format) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            var name = reader.nextName();
+            var token = reader.peek();
+            if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+                reader.skipValue();
+                continue;
+            }
+            var value = reader.nextString();
+            if (format) {
+                switch (name) {
+                    case "format_name" -> builder.formatName = value;
+                    case "duration" -> builder.formatDuration = parseDouble(value);
+                    default -> {
+                    }
+                }
+                continue;
+            }
+            switch (name) {
+                case "codec_name" -> builder.codec = value;
+                case "pix_fmt" -> builder.pixFmt = value;
+                case "width" -> builder.width = Integer.parseInt(value);
+                case "height" -> builder.height = Integer.parseInt(value);
+                case "avg_frame_rate" -> builder.avgFrameRate = value;
+                case "r_frame_rate" -> builder.realFrameRate = value;
+                case "duration" -> builder.streamDuration = parseDouble(value);
+                case "nb_frames" -> builder.frameCount = parseLong(value);
+                case "nb_read_packets" -> builder.readPackets = parseLong(value);
+                default -> {
+                }
+            }
+        }
+        reader.endObject();
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0; // "N/A"
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class Builder {
+        private String formatName;
+        private double formatDuration;
+        private String codec;
+        private String pixFmt;
+        private int width;
+        private int height;
+        private String avgFrameRate;
+        private String realFrameRate;
+        private double streamDuration;
+        private long frameCount;
+        private long readPackets;
+
+        private FfprobeReport build() {
+            return new FfprobeReport(formatName, formatDuration, codec, pixFmt, width, height, avgFrameRate,
+                    realFrameRate, streamDuration, frameCount, readPackets);
+        }
+    }
+
+}
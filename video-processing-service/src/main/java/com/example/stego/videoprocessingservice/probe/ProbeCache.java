@@ -0,0 +1,32 @@
+package com.example.stego.videoprocessingservice.probe;
+
+import com.example.stego.videoprocessingservice.model.VideoProbe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of probe results, keyed by {@link CarrierHeader#contentHash()}.
+ */
+public class ProbeCache {
+
+    private final Map<String, VideoProbe> entries;
+
+    public ProbeCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VideoProbe> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized VideoProbe get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, VideoProbe probe) {
+        entries.put(key, probe);
+    }
+
+}
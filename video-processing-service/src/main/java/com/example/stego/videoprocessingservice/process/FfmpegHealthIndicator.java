@@ -0,0 +1,29 @@
+package com.example.stego.videoprocessingservice.process;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports whether ffmpeg binaries can be started, and how busy the node's process slots are.
+ */
+@Component("ffmpeg")
+@RequiredArgsConstructor
+public class FfmpegHealthIndicator implements HealthIndicator {
+
+    private final FfmpegProcessManager ffmpegProcessManager;
+
+    @Override
+    public Health health() {
+        var spawnFailure = ffmpegProcessManager.lastSpawnFailure();
+        var health = spawnFailure == null ? Health.up() : Health.down(spawnFailure);
+        return health
+                .withDetail("activeProcessSlots", ffmpegProcessManager.activeProcessSlots())
+                .withDetail("maxProcesses", ffmpegProcessManager.getMaxProcesses())
+                .withDetail("queuedJobs", ffmpegProcessManager.queuedJobs())
+                .withDetail("warmProbesReady", ffmpegProcessManager.warmProbesReady())
+                .build();
+    }
+
+}
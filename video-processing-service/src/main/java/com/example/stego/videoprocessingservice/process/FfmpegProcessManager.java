@@ -0,0 +1,186 @@
+package com.example.stego.videoprocessingservice.process;
+
+import com.example.stego.videoprocessingservice.probe.FfprobeReport;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Starts every ffmpeg and ffprobe process of this node.
+ * <p>
+ * <ul>
+ *     <li>At most {@code maxProcesses} children run at once; {@link #open(int)} blocks until enough slots are free.</li>
+ *     <li>A watchdog kills a {@link ProcessGroup} that outlives {@code timeout}.</li>
+ *     <li>Groups opened while {@link #JOB_ID} is bound can be killed with {@link #cancel(String)}.</li>
+ *     <li>A few ffprobe processes are kept spawned and blocked on stdin, which hides process start-up from
+ *     probes.</li>
+ * </ul>
+ */
+@Slf4j
+public class FfmpegProcessManager implements AutoCloseable {
+
+    /**
+     * Job the current thread works for; bind it with {@code ScopedValue.where(JOB_ID, jobId)}.
+     */
+    public static final ScopedValue<String> JOB_ID = ScopedValue.newInstance();
+
+    public static final List<String> WARM_PROBE_COMMAND = List.of(
+            "ffprobe",
+            "-v", "error",
+            "-select_streams", "v:0",
+            "-count_packets",
+            "-show_entries", FfprobeReport.PROBE_ENTRIES,
+            "-of", "json",
+            "-i", "pipe:0"
+    );
+
+    @Getter
+    private final int maxProcesses;
+    private final Duration timeout;
+    @Getter
+    private final int stderrTailLines;
+    private final int warmProbes;
+
+    private final Semaphore slots;
+    private final Map<String, Set<ProcessGroup>> groupsByJob = new ConcurrentHashMap<>();
+    private final Set<ProcessGroup> openGroups = ConcurrentHashMap.newKeySet();
+    private final LinkedBlockingQueue<Process> warmProbeQueue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ffmpeg-watchdog").daemon().factory()
+    );
+    private volatile IOException lastSpawnFailure;
+    private volatile boolean closed;
+
+    public FfmpegProcessManager(int maxProcesses, Duration timeout, int stderrTailLines, int warmProbes) {
+        this.maxProcesses = maxProcesses;
+        this.timeout = timeout;
+        this.stderrTailLines = stderrTailLines;
+        this.warmProbes = warmProbes;
+        this.slots = new Semaphore(maxProcesses, true);
+        refillWarmProbes();
+    }
+
+    /**
+     * Reserves {@code processes} slots, waiting for them if the node is busy, and arms the watchdog.
+     */
+    public ProcessGroup open(int processes) throws InterruptedException {
+        if (processes < 1 || processes > maxProcesses) {
+            throw new IllegalArgumentException("A group needs 1 to " + maxProcesses + " processes, got " + processes);
+        }
+        slots.acquire(processes);
+
+        var jobId = JOB_ID.isBound() ? JOB_ID.get() : null;
+        var group = new ProcessGroup(this, jobId, processes);
+        openGroups.add(group);
+        if (jobId != null) {
+            groupsByJob.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(group);
+        }
+        group.watchdog(watchdog.schedule(
+                () -> group.abort("timed out after " + timeout), timeout.toMillis(), TimeUnit.MILLISECONDS
+        ));
+        return group;
+    }
+
+    /**
+     * Kills every running process of the job.
+     *
+     * @return {@code false} if the job has no processes on this node
+     */
+    public boolean cancel(String jobId) {
+        var groups = groupsByJob.get(jobId);
+        if (groups == null) {
+            return false;
+        }
+        groups.forEach(group -> group.abort("job " + jobId + " was cancelled"));
+        return true;
+    }
+
+    void release(ProcessGroup group) {
+        openGroups.remove(group);
+        if (group.getJobId() != null) {
+            groupsByJob.computeIfPresent(group.getJobId(), (id, groups) -> {
+                groups.remove(group);
+                return groups.isEmpty() ? null : groups;
+            });
+        }
+        slots.release(group.getSlots());
+    }
+
+    Process takeWarmProbe() throws IOException {
+        try {
+            Process process;
+            while ((process = warmProbeQueue.poll()) != null) {
+                if (process.isAlive()) {
+                    return process;
+                }
+            }
+            return new ProcessBuilder(WARM_PROBE_COMMAND).start();
+        } finally {
+            refillWarmProbes();
+        }
+    }
+
+    private void refillWarmProbes() {
+        if (warmProbes <= 0 || closed || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("ffprobe-warmer").start(() -> {
+            try {
+                warmProbeQueue.removeIf(process -> !process.isAlive());
+                while (!closed && warmProbeQueue.size() < warmProbes) {
+                    warmProbeQueue.add(new ProcessBuilder(WARM_PROBE_COMMAND).start());
+                }
+                lastSpawnFailure = null;
+            } catch (IOException e) {
+                log.warn("Could not pre-spawn ffprobe", e);
+                lastSpawnFailure = e;
+            } finally {
+                refilling.set(false);
+            }
+        });
+    }
+
+    public int activeProcessSlots() {
+        return maxProcesses - slots.availablePermits();
+    }
+
+    public int queuedJobs() {
+        return slots.getQueueLength();
+    }
+
+    public int warmProbesReady() {
+        return (int) warmProbeQueue.stream().filter(Process::isAlive).count();
+    }
+
+    /**
+     * @return the error of the last failed ffprobe spawn, or {@code null} if the binaries can be started
+     */
+    public IOException lastSpawnFailure() {
+        return lastSpawnFailure;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        watchdog.shutdownNow();
+        openGroups.forEach(group -> group.abort("shutting down"));
+        Process process;
+        while ((process = warmProbeQueue.poll()) != null) {
+            process.destroyForcibly();
+        }
+    }
+
+}
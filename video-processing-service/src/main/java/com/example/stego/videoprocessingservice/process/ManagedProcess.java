@@ -0,0 +1,96 @@
+package com.example.stego.videoprocessingservice.process;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An ffmpeg or ffprobe process started through a {@link ProcessGroup}.
+ * <p>
+ * Its stderr is always drained, into a {@link StderrRingBuffer} and an optional {@link StderrListener}, so the
+ * child can never block on a full pipe.
+ */
+@Slf4j
+public class ManagedProcess {
+
+    @Getter
+    private final String stage;
+    private final Process process;
+    private final ProcessGroup group;
+    private final StderrRingBuffer stderr;
+
+    ManagedProcess(String stage, Process process, ProcessGroup group, int stderrTailLines, StderrListener listener) {
+        this.stage = stage;
+        this.process = process;
+        this.group = group;
+        this.stderr = new StderrRingBuffer(stderrTailLines);
+        Thread.ofVirtual().name("ffmpeg-stderr-" + stage).start(() -> drainStderr(listener));
+    }
+
+    public InputStream getInputStream() {
+        return process.getInputStream();
+    }
+
+    public OutputStream getOutputStream() {
+        return process.getOutputStream();
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public int waitFor() throws InterruptedException {
+        return process.waitFor();
+    }
+
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return process.waitFor(timeout, unit);
+    }
+
+    /**
+     * Waits for the process and fails with its stderr tail, and the reason if the group was aborted, unless it
+     * exited with 0.
+     */
+    public void awaitSuccess() throws IOException, InterruptedException {
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            var reason = group.abortReason();
+            throw new IOException(stage + " process exited with code " + exitCode
+                    + (reason != null ? " (" + reason + ")" : "") + ": " + stderr.tail());
+        }
+    }
+
+    public void destroy() {
+        process.destroy();
+    }
+
+    public void destroyForcibly() {
+        process.destroyForcibly();
+    }
+
+    public String stderrTail() {
+        return stderr.tail();
+    }
+
+    private void drainStderr(StderrListener listener) {
+        try (var reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                stderr.add(line);
+                listener.onLine(line);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Stopped draining stderr of {}", stage, e);
+        } finally {
+            listener.onEnd();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.example.stego.videoprocessingservice.process;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The processes of one pipeline stage, e.g. an extractor and its assembler.
+ * <p>
+ * A group holds a process slot for each process it may start, reserved up front so that two half-started pipelines
+ * can never wait on each other's slots. It is killed as a whole by the watchdog or by job cancellation, and closing
+ * it kills whatever is still running and gives the slots back.
+ */
+@Slf4j
+public class ProcessGroup implements AutoCloseable {
+
+    private final FfmpegProcessManager manager;
+    @Getter
+    private final String jobId;
+    @Getter
+    private final int slots;
+    private final List<ManagedProcess> processes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile String abortReason;
+    private volatile ScheduledFuture<?> watchdog;
+
+    ProcessGroup(FfmpegProcessManager manager, String jobId, int slots) {
+        this.manager = manager;
+        this.jobId = jobId;
+        this.slots = slots;
+    }
+
+    public ManagedProcess start(String stage, List<String> command) throws IOException {
+        return start(stage, command, StderrListener.NONE);
+    }
+
+    public ManagedProcess start(String stage, List<String> command, StderrListener stderrListener) throws IOException {
+        return adopt(stage, new ProcessBuilder(command), stderrListener, null);
+    }
+
+    /**
+     * Starts {@link FfmpegProcessManager#WARM_PROBE_COMMAND}, taking an already spawned ffprobe when one is ready.
+     */
+    public ManagedProcess startWarmProbe() throws IOException {
+        return adopt("probe", null, StderrListener.NONE, manager.takeWarmProbe());
+    }
+
+    private ManagedProcess adopt(
+            String stage,
+            ProcessBuilder builder,
+            StderrListener stderrListener,
+            Process started
+    ) throws IOException {
+        if (processes.size() >= slots) {
+            throw new IllegalStateException("Process group was opened for " + slots + " processes");
+        }
+        if (abortReason != null) {
+            throw new IOException("Not starting " + stage + ": " + abortReason);
+        }
+
+        var process = started != null ? started : builder.start();
+        var managed = new ManagedProcess(stage, process, this, manager.getStderrTailLines(), stderrListener);
+        processes.add(managed);
+
+        // The group may have been aborted while the process was starting
+        if (abortReason != null) {
+            managed.destroyForcibly();
+        }
+        return managed;
+    }
+
+    public String abortReason() {
+        return abortReason;
+    }
+
+    void watchdog(ScheduledFuture<?> watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Kills every process of the group; processes started afterwards are refused.
+     */
+    void abort(String reason) {
+        if (closed.get()) {
+            return;
+        }
+        abortReason = reason;
+        for (var process : processes) {
+            if (process.isAlive()) {
+                log.warn("Killing {} of job {}: {}. Last stderr lines:\n{}", process.getStage(), jobId, reason, process.stderrTail());
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (watchdog != null) {
+            watchdog.cancel(false);
+        }
+        for (var process : processes) {
+            process.destroyForcibly();
+        }
+        manager.release(this);
+    }
+
+}
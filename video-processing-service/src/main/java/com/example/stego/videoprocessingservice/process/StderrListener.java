@@ -0,0 +1,20 @@
+package com.example.stego.videoprocessingservice.process;
+
+/**
+ * Receives a managed process' stderr line by line, on the thread that drains it.
+ */
+@FunctionalInterface
+public interface StderrListener {
+
+    StderrListener NONE = line -> {
+    };
+
+    void onLine(String line);
+
+    /**
+     * Called once stderr is closed, i.e. the process has exited or was killed.
+     */
+    default void onEnd() {
+    }
+
+}
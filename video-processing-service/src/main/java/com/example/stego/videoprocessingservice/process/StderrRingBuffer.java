@@ -0,0 +1,29 @@
+package com.example.stego.videoprocessingservice.process;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps the last lines a process wrote to stderr, for error messages and timeout logs.
+ */
+public class StderrRingBuffer {
+
+    private final int capacity;
+    private final ArrayDeque<String> lines;
+
+    public StderrRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.lines = new ArrayDeque<>(this.capacity);
+    }
+
+    public synchronized void add(String line) {
+        if (lines.size() == capacity) {
+            lines.removeFirst();
+        }
+        lines.addLast(line);
+    }
+
+    public synchronized String tail() {
+        return String.join(System.lineSeparator(), lines);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.stego.videoprocessingservice.services;
+
+import com.example.stego.videoprocessingservice.model.CapacityEstimate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface CapacityEstimationService {
+
+    CapacityEstimate estimate(
+            InputStream carrierVideoStream,
+            long contentLength
+    ) throws IOException, InterruptedException;
+
+}
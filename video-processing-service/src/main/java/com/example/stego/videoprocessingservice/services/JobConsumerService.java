@@ -2,11 +2,20 @@ package com.example.stego.videoprocessingservice.services;
 
 import com.example.stego.videoprocessingservice.model.KafkaDecodeRequest;
 import com.example.stego.videoprocessingservice.model.KafkaEncodeRequest;
+import com.example.stego.videoprocessingservice.model.KafkaJobCancel;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
 
 public interface JobConsumerService {
 
-    void handleEncodeRequest(KafkaEncodeRequest kafkaEncodeRequest);
+    String ENCODE_LISTENER_ID = "encode-requests";
+    String DECODE_LISTENER_ID = "decode-requests";
+    String CANCEL_LISTENER_ID = "cancel-requests";
 
-    void handleDecodeRequest(KafkaDecodeRequest kafkaDecodeRequest);
+    void handleEncodeRequest(KafkaEncodeRequest kafkaEncodeRequest, ConsumerRecordMetadata metadata, Acknowledgment acknowledgment);
+
+    void handleDecodeRequest(KafkaDecodeRequest kafkaDecodeRequest, ConsumerRecordMetadata metadata, Acknowledgment acknowledgment);
+
+    void handleCancelRequest(KafkaJobCancel kafkaJobCancel);
 
 }
@@ -0,0 +1,33 @@
+package com.example.stego.videoprocessingservice.services;
+
+import com.example.stego.videoprocessingservice.engine.PayloadSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Hybrid encryption and signing of payloads, either in-process or through cryptography-service
+ * ({@code pqcstego.crypto.mode}).
+ */
+public interface PayloadCryptoService {
+
+    /**
+     * Encrypts the secret file for its recipient and signs it as the sender. The payload is produced while it is
+     * read; closing it releases the secret's download.
+     */
+    PayloadSource seal(
+            String secretFileId,
+            String recipientUserId,
+            String senderPrivateKey
+    ) throws IOException, GeneralSecurityException;
+
+    /**
+     * Verifies and decrypts an extracted payload; the returned stream yields the secret.
+     */
+    InputStream open(
+            byte[] payload,
+            String recipientPrivateKey
+    ) throws IOException, GeneralSecurityException;
+
+}
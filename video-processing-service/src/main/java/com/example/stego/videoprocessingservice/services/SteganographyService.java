@@ -1,5 +1,8 @@
 package com.example.stego.videoprocessingservice.services;
 
+import com.example.stego.videoprocessingservice.engine.PayloadSource;
+import com.example.stego.videoprocessingservice.model.EmbeddingMode;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -9,10 +12,24 @@ public interface SteganographyService {
 
     void embedPayload(
             InputStream carrierVideoStream,
-            byte[] payloadData,
+            PayloadSource payload,
             OutputStream stegoVideoOutputStream
     ) throws IOException, InterruptedException;
 
+    /**
+     * Writes the stego video to {@code stegoVideoOutputStream} and closes it once the video is complete. If embedding
+     * fails, the exception propagates and the stream is left open, so its consumer never sees a clean end of a
+     * truncated video.
+     */
+    void embedPayload(
+            InputStream carrierVideoStream,
+            PayloadSource payload,
+            OutputStream stegoVideoOutputStream,
+            EmbeddingMode embeddingMode
+    ) throws IOException, InterruptedException;
+
+    EmbeddingMode getDefaultEmbeddingMode();
+
     byte[] extractPayload(
             InputStream stegoVideoInputStream
     ) throws IOException, InterruptedException;
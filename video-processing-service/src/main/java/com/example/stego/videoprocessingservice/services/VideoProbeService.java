@@ -0,0 +1,22 @@
+package com.example.stego.videoprocessingservice.services;
+
+import com.example.stego.videoprocessingservice.model.VideoProbe;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface VideoProbeService {
+
+    /**
+     * Describes the carrier's first video stream from its container header.
+     *
+     * @param contentLength total carrier size if known, otherwise -1; used to extrapolate frame counts of formats
+     *                      that carry none in their header. The stream may end before it, if only the carrier's
+     *                      first bytes were sent.
+     */
+    VideoProbe probe(
+            InputStream carrierVideoStream,
+            long contentLength
+    ) throws IOException, InterruptedException;
+
+}
@@ -0,0 +1,87 @@
+package com.example.stego.videoprocessingservice.services.impl;
+
+import com.example.stego.cryptocommons.HybridPayload;
+import com.example.stego.videoprocessingservice.engine.CompressedDomainEmbedder;
+import com.example.stego.videoprocessingservice.engine.EmbeddingPlanes;
+import com.example.stego.videoprocessingservice.engine.StegoHeader;
+import com.example.stego.videoprocessingservice.model.CapacityEstimate;
+import com.example.stego.videoprocessingservice.model.EmbeddingMode;
+import com.example.stego.videoprocessingservice.model.VideoProbe;
+import com.example.stego.videoprocessingservice.probe.CarrierTooLargeException;
+import com.example.stego.videoprocessingservice.probe.LimitedInputStream;
+import com.example.stego.videoprocessingservice.services.CapacityEstimationService;
+import com.example.stego.videoprocessingservice.services.VideoProbeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class CapacityEstimationServiceImpl implements CapacityEstimationService {
+
+    private final VideoProbeService videoProbeService;
+
+    @Value("${pqcstego.embedding.planes:ALL}")
+    private EmbeddingPlanes embeddingPlanes;
+
+    @Value("${pqcstego.estimate.max-upload-mb:4096}")
+    private long maxUploadMb;
+
+    @Override
+    public CapacityEstimate estimate(
+            InputStream carrierVideoStream,
+            long contentLength
+    ) throws IOException, InterruptedException {
+
+        var maxUploadBytes = maxUploadMb * 1024 * 1024;
+        if (contentLength > maxUploadBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Carrier exceeds " + maxUploadMb + " MB.");
+        }
+
+        VideoProbe video;
+        var body = new LimitedInputStream(carrierVideoStream, maxUploadBytes);
+        try {
+            // Only the header is read; the rest of the upload is never buffered
+            video = videoProbeService.probe(body, contentLength);
+
+            // Unread request bodies beyond a few MB make the server reset the connection under the client
+            body.transferTo(OutputStream.nullOutputStream());
+        } catch (CarrierTooLargeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+        }
+
+        // One payload bit per embedded byte of every frame, minus the header framing the payload, and what sealing
+        // the secret into that payload adds to it
+        long capacityBits = video.frameCount() * embeddingPlanes.embeddableBytes(video.rawVideoFormat());
+        long capacityBytes;
+        try {
+            capacityBytes = Math.max(0, HybridPayload.maxSecretLength(capacityBits / 8 - StegoHeader.LENGTH));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not size the sealed payload", e);
+        }
+
+        var compressedDomainSupported = CompressedDomainEmbedder.supports(video.codec(), video.pixFmt());
+        return new CapacityEstimate(
+                video,
+                embeddingPlanes,
+                video.frameCountExact(),
+                List.of(
+                        new CapacityEstimate.ModeCapacity(EmbeddingMode.FULL_REENCODE, true, capacityBytes),
+                        new CapacityEstimate.ModeCapacity(
+                                EmbeddingMode.COMPRESSED_DOMAIN,
+                                compressedDomainSupported,
+                                compressedDomainSupported ? capacityBytes : 0
+                        )
+                )
+        );
+    }
+
+}
@@ -1,25 +1,301 @@
 package com.example.stego.videoprocessingservice.services.impl;
 
+import com.example.stego.cryptocommons.HybridCryptoException;
+import com.example.stego.videoprocessingservice.jobs.JobDispatcher;
+import com.example.stego.videoprocessingservice.model.JobStatus;
 import com.example.stego.videoprocessingservice.model.KafkaDecodeRequest;
 import com.example.stego.videoprocessingservice.model.KafkaEncodeRequest;
+import com.example.stego.videoprocessingservice.model.KafkaJobCancel;
+import com.example.stego.videoprocessingservice.model.KafkaJobCompletion;
 import com.example.stego.videoprocessingservice.services.JobConsumerService;
+import com.example.stego.videoprocessingservice.services.PayloadCryptoService;
+import com.example.stego.videoprocessingservice.services.SteganographyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.adapter.ConsumerRecordMetadata;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class JobConsumerServiceImpl implements JobConsumerService {
 
+    private static final int UPLOAD_PIPE_SIZE = 1024 * 1024;
+    private final SteganographyService steganographyService;
+    private final PayloadCryptoService payloadCryptoService;
+    private final JobDispatcher jobDispatcher;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final RestClient fileServiceRestClient;
+    private final String FILE_SERVICE_DOWNLOAD_URI = "/api/v1/files/{fileId}";
+    private final String FILE_SERVICE_DELETE_URI = "/api/v1/files/{fileId}";
+
+    @Value("${pqcstego.topics.job-completion}")
+    private String jobCompletionTopic;
+
     @Override
-    public void handleEncodeRequest(KafkaEncodeRequest kafkaEncodeRequest) {
+    @KafkaListener(
+            id = ENCODE_LISTENER_ID,
+            topics = "${pqcstego.topics.request-encode}",
+            containerFactory = "jobRequestListenerContainerFactory",
+            properties = "spring.json.value.default.type=com.example.stego.videoprocessingservice.model.KafkaEncodeRequest"
+    )
+    public void handleEncodeRequest(
+            KafkaEncodeRequest kafkaEncodeRequest,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment
+    ) {
+        log.info("Received encode request for jobId: {}", kafkaEncodeRequest.getJobId());
+        jobDispatcher.dispatch(
+                kafkaEncodeRequest.getJobId(),
+                new TopicPartition(metadata.topic(), metadata.partition()),
+                () -> runJob(kafkaEncodeRequest.getJobId(), () -> encode(kafkaEncodeRequest)),
+                acknowledgment
+        );
+    }
 
+    @Override
+    @KafkaListener(
+            id = DECODE_LISTENER_ID,
+            topics = "${pqcstego.topics.request-decode}",
+            containerFactory = "jobRequestListenerContainerFactory",
+            properties = "spring.json.value.default.type=com.example.stego.videoprocessingservice.model.KafkaDecodeRequest"
+    )
+    public void handleDecodeRequest(
+            KafkaDecodeRequest kafkaDecodeRequest,
+            ConsumerRecordMetadata metadata,
+            Acknowledgment acknowledgment
+    ) {
+        log.info("Received decode request for jobId: {}", kafkaDecodeRequest.getJobId());
+        jobDispatcher.dispatch(
+                kafkaDecodeRequest.getJobId(),
+                new TopicPartition(metadata.topic(), metadata.partition()),
+                () -> runJob(kafkaDecodeRequest.getJobId(), () -> decode(kafkaDecodeRequest)),
+                acknowledgment
+        );
     }
 
+    // Every node gets every cancellation (a group of its own, named after its instance id so a restart rejoins it
+    // rather than leaving a new group behind each time); only the one running the job acts on it
     @Override
-    public void handleDecodeRequest(KafkaDecodeRequest kafkaDecodeRequest) {
+    @KafkaListener(
+            id = CANCEL_LISTENER_ID,
+            topics = "${pqcstego.topics.job-cancel}",
+            groupId = "video-processing-cancel-${eureka.instance.instance-id}",
+            properties = {
+                    "spring.json.value.default.type=com.example.stego.videoprocessingservice.model.KafkaJobCancel",
+                    "auto.offset.reset=latest"
+            }
+    )
+    public void handleCancelRequest(KafkaJobCancel kafkaJobCancel) {
+        if (jobDispatcher.cancel(kafkaJobCancel.getJobId())) {
+            log.info("Cancelling jobId: {}", kafkaJobCancel.getJobId());
+        }
+    }
+
+    /**
+     * @return whether an outcome was reported; not for a job this node was made to hand over
+     */
+    private boolean runJob(String jobId, JobTask task) {
+        KafkaJobCompletion completion;
+        try {
+            if (jobDispatcher.isCancelled(jobId)) {
+                throw new InterruptedException("Job " + jobId + " was cancelled before it started");
+            }
+            var outputFileId = task.run();
+            completion = KafkaJobCompletion.builder()
+                    .jobId(jobId)
+                    .status(JobStatus.COMPLETED)
+                    .outputFileGridFsId(outputFileId)
+                    .build();
+        } catch (Exception e) {
+            if (jobDispatcher.isAbandoned(jobId)) {
+                // Whatever it uploaded is deleted already; the node that claims it next reports it
+                Thread.interrupted();
+                log.info("Job {} was handed over to another node", jobId);
+                return false;
+            }
+            if (jobDispatcher.isCancelled(jobId)) {
+                // Clear the interrupt, or it would fail the send below
+                Thread.interrupted();
+                log.info("Job {} was cancelled", jobId);
+                completion = KafkaJobCompletion.builder()
+                        .jobId(jobId)
+                        .status(JobStatus.CANCELLED)
+                        .build();
+            } else {
+                log.error("Job {} failed", jobId, e);
+                completion = KafkaJobCompletion.builder()
+                        .jobId(jobId)
+                        .status(JobStatus.FAILED)
+                        .errorMessage(failureMessage(e))
+                        .build();
+            }
+        }
+        kafkaTemplate.send(jobCompletionTopic, jobId, completion);
+        return true;
+    }
+
+    /**
+     * Payloads that fail verification or decryption report just the reason (e.g. SIGNATURE_INVALID), however deeply
+     * the stream that hit it wrapped it.
+     */
+    private static String failureMessage(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HybridCryptoException cryptoFailure) {
+                return cryptoFailure.getReason().name();
+            }
+        }
+        return e.getMessage();
+    }
+
+    private String encode(KafkaEncodeRequest request) throws IOException, InterruptedException, GeneralSecurityException {
+        var mode = steganographyService.getDefaultEmbeddingMode();
+
+        // The secret is sealed while it is read: its download stays open for the whole job and the frames that
+        // carry each part of the payload pull it through encryption and signing. The stego video is uploaded
+        // while it is being encoded.
+        try (var payload = payloadCryptoService.seal(
+                request.getSecretFileGridFsId(),
+                request.getRecipientUserId(),
+                request.getSenderPrivateKey()
+        )) {
+            return downloadFile(request.getInputFileGridFsId(), carrier -> uploadStream(
+                    "stego-" + request.getJobId() + "." + mode.getContainerFormat(),
+                    mode.getContentType(),
+                    request.getRecipientUserId(),
+                    output -> steganographyService.embedPayload(carrier, payload, output, mode)
+            ));
+        }
+    }
+
+    private String decode(KafkaDecodeRequest request) throws IOException, InterruptedException, GeneralSecurityException {
+        var payload = downloadFile(request.getInputFileGridFsId(), steganographyService::extractPayload);
+        try (var secret = payloadCryptoService.open(payload, request.getRecipientPrivateKey())) {
+            return steganographyService.uploadFile(
+                    secret,
+                    "payload-" + request.getJobId() + ".bin",
+                    "application/octet-stream",
+                    null
+            );
+        }
+    }
+
+    /**
+     * Streams a file from file-service into {@code handler}; the body is only open while the handler runs.
+     */
+    private <T> T downloadFile(String fileId, StreamHandler<T> handler) throws IOException, InterruptedException {
+        try {
+            return fileServiceRestClient.get()
+                    .uri(FILE_SERVICE_DOWNLOAD_URI, fileId)
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new IOException("Download of file " + fileId + " failed: " + response.getStatusCode());
+                        }
+                        try (var body = response.getBody()) {
+                            return handler.handle(body);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while processing file " + fileId);
+                        }
+                    });
+        } catch (ResourceAccessException e) {
+            // RestClient wraps I/O errors, including those of the handler
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads whatever {@code producer} writes, through a pipe, while it is being written. If the producer fails,
+     * nothing is left stored in file-service.
+     */
+    private String uploadStream(
+            String fileName,
+            String contentType,
+            String ownerId,
+            StreamProducer producer
+    ) throws IOException, InterruptedException {
+        var uploadInput = new PipedInputStream(UPLOAD_PIPE_SIZE);
+        var producerOutput = new PipedOutputStream(uploadInput);
+        var storedFileId = new AtomicReference<String>();
+        var completed = false;
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var upload = executor.submit(() -> {
+                try (uploadInput) {
+                    var fileId = steganographyService.uploadFile(uploadInput, fileName, contentType, ownerId);
+                    storedFileId.set(fileId);
+                    return fileId;
+                }
+            });
+
+            try {
+                producer.produce(producerOutput);
+                // Only a complete file ends the stream; on failure the write end stays open, so the upload can't
+                // mistake a truncated file for a whole one and fails on the interrupt instead
+                producerOutput.close();
+                var fileId = upload.get();
+                completed = true;
+                return fileId;
+            } catch (ExecutionException e) {
+                throw new IOException("Upload of " + fileName + " failed", e.getCause());
+            } finally {
+                if (!completed) {
+                    upload.cancel(true);
+                }
+            }
+        } finally {
+            // The executor has waited for the upload by now: delete what it managed to store anyway
+            if (!completed && storedFileId.get() != null) {
+                deleteFile(storedFileId.get());
+            }
+        }
+    }
+
+    private void deleteFile(String fileId) {
+        try {
+            fileServiceRestClient.delete()
+                    .uri(FILE_SERVICE_DELETE_URI, fileId)
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (RuntimeException e) {
+            log.warn("Could not delete file {} of a failed job", fileId, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobTask {
+        String run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface StreamHandler<T> {
+        T handle(InputStream input) throws IOException, InterruptedException;
+    }
 
+    @FunctionalInterface
+    private interface StreamProducer {
+        void produce(OutputStream output) throws IOException, InterruptedException;
     }
 
 }
@@ -0,0 +1,91 @@
+package com.example.stego.videoprocessingservice.services.impl;
+
+import com.example.stego.cryptocommons.HybridPayload;
+import com.example.stego.cryptocommons.PqcKeys;
+import com.example.stego.videoprocessingservice.engine.PayloadSource;
+import com.example.stego.videoprocessingservice.services.PayloadCryptoService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+/**
+ * Seals and opens payloads in this JVM with crypto-commons, so the secret never leaves the node. Only the
+ * recipient's public key is fetched from cryptography-service.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "pqcstego.crypto.mode", havingValue = "local", matchIfMissing = true)
+public class LocalPayloadCryptoServiceImpl implements PayloadCryptoService {
+
+    private final RestClient fileServiceRestClient;
+    private final RestClient pqcServiceRestClient;
+    private final String FILE_SERVICE_DOWNLOAD_URI = "/api/v1/files/{fileId}";
+    private final String PQC_SERVICE_PUBLIC_KEY_URI = "/api/v1/keys/user/{userId}";
+
+    @Override
+    public PayloadSource seal(
+            String secretFileId,
+            String recipientUserId,
+            String senderPrivateKey
+    ) throws IOException, GeneralSecurityException {
+
+        var recipientKemKey = PqcKeys.decodeKemPublicKey(fetchKemPublicKey(recipientUserId));
+        var senderDsaKey = PqcKeys.decodeDsaPrivateKey(senderPrivateKey);
+        var secret = openSecret(secretFileId);
+
+        try {
+            var sealed = HybridPayload.seal(secret.stream(), secret.length(), recipientKemKey, senderDsaKey);
+            return new PayloadSource(sealed.stream(), sealed.length());
+        } catch (GeneralSecurityException | RuntimeException e) {
+            secret.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream open(byte[] payload, String recipientPrivateKey) throws GeneralSecurityException {
+        return HybridPayload.open(payload, PqcKeys.decodeKemPrivateKey(recipientPrivateKey));
+    }
+
+    private String fetchKemPublicKey(String userId) throws IOException {
+        try {
+            var publicKey = pqcServiceRestClient.get()
+                    .uri(PQC_SERVICE_PUBLIC_KEY_URI, userId)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<Map<String, Object>>() {
+                    });
+            if (publicKey == null || !(publicKey.get("kemPublicKey") instanceof String kemPublicKey)) {
+                throw new IOException("cryptography-service returned no KEM public key for user " + userId);
+            }
+            return kemPublicKey;
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new IOException("Recipient " + userId + " has no active public key", e);
+        }
+    }
+
+    /**
+     * Opens the secret's download; it stays open until the returned source is closed.
+     */
+    private PayloadSource openSecret(String secretFileId) {
+        return fileServiceRestClient.get()
+                .uri(FILE_SERVICE_DOWNLOAD_URI, secretFileId)
+                .exchange((request, response) -> {
+                    var length = response.getHeaders().getContentLength();
+                    if (response.getStatusCode().isError() || length < 0) {
+                        response.close();
+                        throw new IOException("Download of secret file " + secretFileId + " failed: "
+                                + (length < 0 ? "no declared length" : response.getStatusCode()));
+                    }
+                    return new PayloadSource(ResponseStreams.closingResponse(response), length);
+                }, false);
+    }
+
+}
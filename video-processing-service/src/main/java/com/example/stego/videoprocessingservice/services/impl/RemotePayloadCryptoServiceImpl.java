@@ -0,0 +1,96 @@
+package com.example.stego.videoprocessingservice.services.impl;
+
+import com.example.stego.cryptocommons.HybridCryptoException;
+import com.example.stego.videoprocessingservice.configs.SecurityConfig;
+import com.example.stego.videoprocessingservice.engine.PayloadSource;
+import com.example.stego.videoprocessingservice.services.PayloadCryptoService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Delegates sealing and opening to cryptography-service. cryptography-service downloads the secret from file-service
+ * itself, so the secret and the payload each cross the network once more than in local mode.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "pqcstego.crypto.mode", havingValue = "remote")
+public class RemotePayloadCryptoServiceImpl implements PayloadCryptoService {
+
+    // Must match HybridController.FAILURE_HEADER in cryptography-service
+    private static final String FAILURE_HEADER = "X-Crypto-Failure";
+
+    private final RestClient pqcServiceRestClient;
+    private final String PQC_SERVICE_SEAL_URI = "/api/v1/internal/crypto/hybrid/seal";
+    private final String PQC_SERVICE_OPEN_URI = "/api/v1/internal/crypto/hybrid/open";
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
+
+    @Override
+    public PayloadSource seal(String secretFileId, String recipientUserId, String senderPrivateKey) {
+        return pqcServiceRestClient.post()
+                .uri(PQC_SERVICE_SEAL_URI)
+                .header(SecurityConfig.SERVICE_TOKEN_HEADER, serviceToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of(
+                        "secretFileId", secretFileId,
+                        "recipientUserId", recipientUserId,
+                        "senderPrivateKey", senderPrivateKey
+                ))
+                // The payload is embedded while cryptography-service is still producing it
+                .exchange((request, response) -> {
+                    var length = response.getHeaders().getContentLength();
+                    if (response.getStatusCode().isError() || length < 0) {
+                        response.close();
+                        throw new IOException("Sealing secret file " + secretFileId + " failed: "
+                                + (length < 0 ? "no declared length" : response.getStatusCode()));
+                    }
+                    return new PayloadSource(ResponseStreams.closingResponse(response), length);
+                }, false);
+    }
+
+    @Override
+    public InputStream open(byte[] payload, String recipientPrivateKey) throws HybridCryptoException {
+        // The key goes in a JSON part rather than a header, where proxies and access logs would record it
+        var body = new MultipartBodyBuilder();
+        body.part("request", Map.of("recipientPrivateKey", recipientPrivateKey), MediaType.APPLICATION_JSON);
+        body.part("payload", new ByteArrayResource(payload), MediaType.APPLICATION_OCTET_STREAM).filename("payload");
+
+        var opened = pqcServiceRestClient.post()
+                .uri(PQC_SERVICE_OPEN_URI)
+                .header(SecurityConfig.SERVICE_TOKEN_HEADER, serviceToken)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(body.build())
+                .exchange((request, response) -> {
+                    var failure = response.getHeaders().getFirst(FAILURE_HEADER);
+                    if (failure != null) {
+                        response.close();
+                        return new Opened(null, HybridCryptoException.Reason.valueOf(failure));
+                    }
+                    if (response.getStatusCode().isError()) {
+                        response.close();
+                        throw new IOException("Opening the payload failed: " + response.getStatusCode());
+                    }
+                    return new Opened(ResponseStreams.closingResponse(response), null);
+                }, false);
+
+        if (opened.failure() != null) {
+            throw new HybridCryptoException(opened.failure(), null);
+        }
+        return opened.secret();
+    }
+
+    private record Opened(InputStream secret, HybridCryptoException.Reason failure) {
+    }
+
+}
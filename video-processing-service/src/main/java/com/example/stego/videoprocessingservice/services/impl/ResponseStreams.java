@@ -0,0 +1,33 @@
+package com.example.stego.videoprocessingservice.services.impl;
+
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bodies of responses that outlive the {@code RestClient} exchange they came from.
+ */
+final class ResponseStreams {
+
+    private ResponseStreams() {
+    }
+
+    /**
+     * @return the response body, which releases the whole response when it is closed
+     */
+    static InputStream closingResponse(ClientHttpResponse response) throws IOException {
+        return new FilterInputStream(response.getBody()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    response.close();
+                }
+            }
+        };
+    }
+
+}
@@ -1,78 +1,132 @@
 package com.example.stego.videoprocessingservice.services.impl;
 
+import com.example.stego.cryptocommons.HybridCryptoException;
+import com.example.stego.cryptocommons.PayloadContainer;
+import com.example.stego.videoprocessingservice.configs.SecurityConfig;
+import com.example.stego.videoprocessingservice.engine.CompressedDomainEmbedder;
+import com.example.stego.videoprocessingservice.engine.EmbeddingPlanes;
+import com.example.stego.videoprocessingservice.engine.FrameBufferPool;
+import com.example.stego.videoprocessingservice.engine.LsbBitCollector;
+import com.example.stego.videoprocessingservice.engine.LsbCodec;
+import com.example.stego.videoprocessingservice.engine.ParallelFrameEmbedder;
+import com.example.stego.videoprocessingservice.engine.PayloadCursor;
+import com.example.stego.videoprocessingservice.engine.PayloadReader;
+import com.example.stego.videoprocessingservice.engine.PayloadSource;
+import com.example.stego.videoprocessingservice.engine.RawFrameReader;
+import com.example.stego.videoprocessingservice.engine.RawVideoFormat;
+import com.example.stego.videoprocessingservice.engine.RawVideoFormatSniffer;
+import com.example.stego.videoprocessingservice.engine.StegoHeader;
+import com.example.stego.videoprocessingservice.model.EmbeddingMode;
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
 import com.example.stego.videoprocessingservice.services.SteganographyService;
-import com.google.gson.Gson;
+import com.example.stego.videoprocessingservice.services.VideoProbeService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class SteganographyServiceImpl implements SteganographyService {
 
-    private static final byte[] PAYLOAD_TERMINATOR = "PQCSTEGO_END".getBytes();
-    private final RestClient fileServiceRestClient;
-    private final String FILE_SERVICE_UPLOAD_URI = "/api/v1/files";
+    // Marks the end of payloads embedded before StegoHeader framing; only read, never written
+    private static final byte[] LEGACY_PAYLOAD_TERMINATOR = "PQCSTEGO_END".getBytes();
+    private static final int EXTRACT_CHUNK_SIZE = 64 * 1024;
+    private static final long EXTRACTOR_EXIT_TIMEOUT_SECONDS = 5;
+    private final RestClient streamingRestClient;
+    private final LoadBalancerClient loadBalancerClient;
+    private final ParallelFrameEmbedder parallelFrameEmbedder;
+    private final CompressedDomainEmbedder compressedDomainEmbedder;
+    private final FrameBufferPool frameBufferPool;
+    private final MeterRegistry meterRegistry;
+    private final FfmpegProcessManager ffmpegProcessManager;
+    private final VideoProbeService videoProbeService;
+    private final String FILE_SERVICE_UPLOAD_URI = "/api/v1/internal/files";
+
+    @Value("${services.file-service-url}")
+    private URI fileServiceUrl;
+
+    @Value("${pqcstego.internal.service-token:}")
+    private String serviceToken;
+
+    @Value("${pqcstego.embedding.pipelined:true}")
+    private boolean pipelinedEmbedding;
+
+    @Value("${pqcstego.embedding.mode:FULL_REENCODE}")
+    private EmbeddingMode defaultEmbeddingMode;
+
+    @Value("${pqcstego.embedding.planes:ALL}")
+    private EmbeddingPlanes embeddingPlanes;
 
 
     @Override
     public void embedPayload(
             InputStream carrierVideoStream,
-            byte[] payloadData,
+            PayloadSource payload,
             OutputStream stegoVideoOutputStream
     ) throws IOException, InterruptedException {
+        embedPayload(carrierVideoStream, payload, stegoVideoOutputStream, defaultEmbeddingMode);
+    }
+
+    @Override
+    public EmbeddingMode getDefaultEmbeddingMode() {
+        return defaultEmbeddingMode;
+    }
+
+    @Override
+    public void embedPayload(
+            InputStream carrierVideoStream,
+            PayloadSource payload,
+            OutputStream stegoVideoOutputStream,
+            EmbeddingMode embeddingMode
+    ) throws IOException, InterruptedException {
+
+        if (embeddingMode == EmbeddingMode.COMPRESSED_DOMAIN) {
+            compressedDomainEmbedder.embed(
+                    carrierVideoStream, payload, embeddingPlanes, stegoVideoOutputStream,
+                    frameReadTimer("embed")
+            );
+            stegoVideoOutputStream.close();
+            return;
+        }
+
+        // Closing the process group first unblocks the pipe threads on failure before the executor waits for them
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var processes = ffmpegProcessManager.open(2)) {
+
+            // The carrier is consumed exactly once, by the extractor; its stderr tells us the frame geometry
+            var formatSniffer = new RawVideoFormatSniffer();
+
+            // ffmpeg command to extract raw video frames (planar yuv420p, usually the carrier's own layout)
+            var extractor = processes.start("extract", List.of(
+                    "ffmpeg",
+                    "-i", "pipe:0",                          // Input from stdin
+                    "-f", "rawvideo",                        // Output format raw video
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,      // Pixel format
+                    "pipe:1"                                 // Output to stdout
+            ), formatSniffer);
 
-        // ffmpeg command to extract raw video frames (rgba)
-        var extractBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-i", "pipe:0",          // Input from stdin
-                "-f", "rawvideo",        // Output format raw video
-                "-pix_fmt", "rgba",      // Pixel format
-                "pipe:1"                 // Output to stdout
-        );
-
-        // ffmpeg command to re-assemble raw frames into an MP4 video
-        var assembleBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-f", "rawvideo",
-                "-pix_fmt", "rgba",
-                "-s", "infer_size",      // Will be replaced with actual size
-                "-r", "30",              // Assume 30fps, should be inferred
-                "-i", "pipe:0",          // Input from stdin
-                "-c:v", "libx264",
-                "-pix_fmt", "yuv420p",
-                "-f", "mp4",
-                "pipe:1"                 // Output to stdout
-        );
-
-        // First, get video dimensions using ffprobe
-        Map<String, Object> videoInfo = getVideoInfo(carrierVideoStream);
-        var width = ((Double) videoInfo.get("width")).intValue();
-        var height = ((Double) videoInfo.get("height")).intValue();
-        var frameRate = (String) videoInfo.get("avg_frame_rate");
-
-        // Update assembler with correct size and framerate
-        assembleBuilder.command().set(5, width + "x" + height);
-        assembleBuilder.command().set(7, frameRate);
-
-        var extractor = extractBuilder.start();
-        var assembler = assembleBuilder.start();
-
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
             // Thread to pipe carrier video to extractor's stdin
             executor.submit(() -> {
                 try (OutputStream extractorStdin = extractor.getOutputStream()) {
@@ -82,77 +136,126 @@ public class SteganographyServiceImpl implements SteganographyService {
                 }
             });
 
-            // Thread to handle embedding and piping between processes
-            executor.submit(() -> {
+            var format = awaitFormat(formatSniffer);
+
+            // ffmpeg command to re-assemble raw frames into an MP4 video
+            var assembler = processes.start("assemble", List.of(
+                    "ffmpeg",
+                    "-f", "rawvideo",
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "-s", format.size(),
+                    "-r", format.frameRate(),
+                    "-i", "pipe:0",          // Input from stdin
+                    "-c:v", "libx264",
+                    "-qp", "0",              // Lossless, so the planes come back bit-exact
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "-movflags", "frag_keyframe+empty_moov", // mp4 cannot seek back on a pipe
+                    "-f", "mp4",
+                    "pipe:1"                 // Output to stdout
+            ));
+
+            // Thread to handle embedding and piping between processes; the payload is pulled frame by frame
+            Future<?> embedding = executor.submit(() -> {
                 try (InputStream extractorStdout = extractor.getInputStream();
                      OutputStream assemblerStdin = assembler.getOutputStream()) {
-                    embedStream(extractorStdout, payloadData, assemblerStdin, width, height);
-                } catch (IOException e) {
-                    log.error("Error during embedding stream processing", e);
+                    try {
+                        var framedPayload = payload.framed(embeddingPlanes.headerFlags());
+                        var frames = new RawFrameReader(extractorStdout, format.frameSize(), frameReadTimer("embed"));
+                        int embeddableBytes = embeddingPlanes.embeddableBytes(format);
+                        if (pipelinedEmbedding) {
+                            parallelFrameEmbedder.embed(frames, framedPayload, assemblerStdin, embeddableBytes);
+                        } else {
+                            embedStream(frames, framedPayload, assemblerStdin, embeddableBytes);
+                        }
+                        log.debug("Embedding finished: {}", frames.stats());
+                    } catch (Throwable e) {
+                        // Killed before its stdin closes, so it cannot finish a shortened but playable video
+                        assembler.destroyForcibly();
+                        throw e;
+                    }
                 }
+                return null;
             });
 
             // Thread to pipe assembler's output to the final stego video stream
-            executor.submit(() -> {
+            Future<?> delivery = executor.submit(() -> {
                 try (InputStream assemblerStdout = assembler.getInputStream()) {
                     assemblerStdout.transferTo(stegoVideoOutputStream);
-                } catch (IOException e) {
-                    log.error("Error piping final video to output stream", e);
-                } finally {
-                    try {
-                        stegoVideoOutputStream.close();
-                    } catch (IOException ignored) {
-                    }
                 }
+                return null;
             });
 
+            // A payload stream that fails midway must fail the job, not leave a shortened video behind
+            try {
+                embedding.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Embedding the payload failed", e.getCause());
+            }
+
             // Wait for processes to finish
-            int extractExitCode = extractor.waitFor();
-            int assembleExitCode = assembler.waitFor();
-            if (extractExitCode != 0 || assembleExitCode != 0) {
-                throw new IOException("ffmpeg process exited with non-zero code. Extraction: " + extractExitCode + ", Assembly: " + assembleExitCode);
+            extractor.awaitSuccess();
+            assembler.awaitSuccess();
+
+            try {
+                delivery.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Writing the stego video failed", e.getCause());
             }
         }
 
+        // Only a complete video ends the output cleanly; on failure it is left open for the consumer to abort
+        stegoVideoOutputStream.close();
+    }
+
+    private RawVideoFormat awaitFormat(RawVideoFormatSniffer formatSniffer) throws IOException, InterruptedException {
+        try {
+            return formatSniffer.format().get();
+        } catch (ExecutionException e) {
+            // Closing the process group stops the extractor, whose stdout nobody will read
+            throw new IOException("Could not determine carrier video format", e.getCause());
+        }
     }
 
     private void embedStream(
-            InputStream rawFrames,
-            byte[] payloadData,
+            RawFrameReader frames,
+            PayloadCursor payload,
             OutputStream output,
-            int width,
-            int height
+            int embeddableBytes
     ) throws IOException {
 
-        var payloadWithTerminator = new ByteArrayOutputStream();
-        payloadWithTerminator.write(payloadData);
-        payloadWithTerminator.write(PAYLOAD_TERMINATOR);
-        var fullPayload = payloadWithTerminator.toByteArray();
-
-        int payloadBitIndex = 0;
-        int frameSize = width * height * 4; // RGBA
-        var frameBuffer = new byte[frameSize];
+        var frameBuffer = frameBufferPool.acquire(frames.frameSize());
+        var outputChannel = Channels.newChannel(output);
 
-        // Read each frame and embed payload bits
-        while (rawFrames.read(frameBuffer) != -1) {
+        try {
+            // Read each frame and embed payload bits
+            while (frames.readFrame(frameBuffer)) {
 
-            // Check if there's still payload to embed
-            if (payloadBitIndex < fullPayload.length * 8) {
-
-                // Embed payload bits into the frame's pixel data
-                for (int i = 0; i < frameBuffer.length && payloadBitIndex < fullPayload.length * 8; i++) {
-                    byte payloadByte = fullPayload[payloadBitIndex / 8];
-                    int bit = (payloadByte >> (7 - (payloadBitIndex % 8))) & 1;
-                    frameBuffer[i] = (byte) ((frameBuffer[i] & 0xFE) | bit); // Set LSB
-                    payloadBitIndex++;
+                // Frames past the end of the payload are passed through untouched
+                var slice = payload.next(embeddableBytes);
+                if (slice != null) {
+                    LsbCodec.embed(frameBuffer, 0, embeddableBytes, slice.bytes(), slice.bitOffset());
                 }
 
+                // Write modified frame to output
+                frameBuffer.flip();
+                while (frameBuffer.hasRemaining()) {
+                    outputChannel.write(frameBuffer);
+                }
             }
+        } finally {
+            frameBufferPool.release(frameBuffer);
+        }
 
-            // Write modified frame to output
-            output.write(frameBuffer);
+        if (payload.remainingBits() > 0) {
+            throw new IOException("Carrier ended with " + payload.remainingBits() + " payload bits not embedded");
         }
+    }
 
+    private Timer frameReadTimer(String stage) {
+        return Timer.builder("pqcstego.frames.read")
+                .description("Time spent waiting for one whole rawvideo frame from ffmpeg")
+                .tag("stage", stage)
+                .register(meterRegistry);
     }
 
     @Override
@@ -160,116 +263,136 @@ public class SteganographyServiceImpl implements SteganographyService {
             InputStream stegoVideoInputStream
     ) throws IOException, InterruptedException {
 
-        var extractBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-i", "pipe:0",
-                "-f", "rawvideo",
-                "-pix_fmt", "rgba",
-                "pipe:1"
-        );
-        var extractor = extractBuilder.start();
-
-        try (var extractorStdin = extractor.getOutputStream();
-             var extractorStdout = extractor.getInputStream();
-             var extractedPayload = new ByteArrayOutputStream()) {
-
-            // Pipe stego video to extractor in a separate thread
-            var pipeToStdin = new Thread(() -> {
-                try {
-                    stegoVideoInputStream.transferTo(extractorStdin);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var processes = ffmpegProcessManager.open(1)) {
+
+            // Frame geometry decides where the Y plane ends when only luma carries the payload
+            var formatSniffer = new RawVideoFormatSniffer();
+
+            // Both embedding modes store lossless yuv420p, so this is the layout the LSBs were written in
+            var extractor = processes.start("extract", List.of(
+                    "ffmpeg",
+                    "-i", "pipe:0",
+                    "-f", "rawvideo",
+                    "-pix_fmt", RawVideoFormat.PIX_FMT,
+                    "pipe:1"
+            ), formatSniffer);
+
+            // Pipe stego video to extractor in a separate thread, until the reader below stops
+            var readerStopped = new AtomicBoolean();
+            executor.submit(() -> {
+                try (OutputStream extractorStdin = extractor.getOutputStream()) {
+                    var buffer = new byte[EXTRACT_CHUNK_SIZE];
+                    int n;
+                    while (!readerStopped.get() && (n = stegoVideoInputStream.read(buffer)) != -1) {
+                        extractorStdin.write(buffer, 0, n);
+                    }
                 } catch (IOException e) {
-                    log.error("Error piping stego video to ffmpeg", e);
-                } finally {
-                    try {
-                        extractorStdin.close();
-                    } catch (IOException ignored) {
+                    if (readerStopped.get()) {
+                        // ffmpeg exited once its output was closed; the reader has what it needs or failed itself
+                        log.debug("Stopped piping stego video to ffmpeg", e);
+                    } else {
+                        log.error("Error piping stego video to ffmpeg", e);
                     }
                 }
             });
 
-            // Start the piping thread
-            pipeToStdin.start();
-
-            // Extract LSBs from the raw frame stream
-            byte currentByte = 0;
-            int bitCount = 0;
-            var buffer = new byte[1024 * 4]; // Read 1k pixels at a time
-            int bytesRead;
-
-            // Read until we find the terminator
-            while ((bytesRead = extractorStdout.read(buffer)) != -1) {
-
-                // Process each byte to extract LSBs
-                for (int i = 0; i < bytesRead; i++) {
-                    var lsb = (byte) (buffer[i] & 1);  // Get LSB
-                    currentByte |= (lsb << (7 - bitCount));
-                    bitCount++;
-
-                    // If we have a full byte, write it to the payload
-                    if (bitCount == 8) {
-                        extractedPayload.write(currentByte);
-                        // Check for terminator
-                        var currentTail = extractedPayload.toByteArray();
-
-                        // Check if the terminator is at the end
-                        if (currentTail.length > PAYLOAD_TERMINATOR.length) {
-                            boolean found = true;
-
-                            // Compare last bytes with terminator
-                            for (int j = 0; j < PAYLOAD_TERMINATOR.length; j++) {
-                                if (currentTail[currentTail.length - PAYLOAD_TERMINATOR.length + j] != PAYLOAD_TERMINATOR[j]) {
-                                    found = false;
-                                    break;
-                                }
-                            }
-
-                            if (found) {
-                                // Terminator found, return payload without it
-                                var finalPayload = new byte[currentTail.length - PAYLOAD_TERMINATOR.length];
-                                System.arraycopy(currentTail, 0, finalPayload, 0, finalPayload.length);
-                                return finalPayload;
-                            }
+            var format = awaitFormat(formatSniffer);
+            var extractorStdout = extractor.getInputStream();
+            var frames = new RawFrameReader(extractorStdout, format.frameSize(), frameReadTimer("extract"));
+            var frame = frameBufferPool.acquire(format.frameSize());
+
+            // Extract LSBs frame by frame, eight carrier bytes per payload byte
+            var payloadReader = new PayloadReader(LEGACY_PAYLOAD_TERMINATOR);
+            var collector = new LsbBitCollector();
+            var decoded = new byte[EXTRACT_CHUNK_SIZE / 8 + 1];
+            int embeddedBytes = format.frameSize(); // until the header says otherwise
+            boolean containerChecked = false;
+            byte[] payload = null;
+
+            try {
+                // Read until the framed length is reached or the legacy terminator is found
+                reading:
+                while (frames.readFrame(frame)) {
+                    int position = 0;
+                    while (position < embeddedBytes) {
+                        // Decode the header on its own first: its flags may narrow the region to the Y plane
+                        int chunkLength = payloadReader.headerRead() ? EXTRACT_CHUNK_SIZE : StegoHeader.LENGTH * 8;
+                        int length = Math.min(chunkLength, embeddedBytes - position);
+                        int decodedCount = collector.extract(frame, position, length, decoded);
+                        position += length;
+
+                        if (payloadReader.accept(decoded, 0, decodedCount)) {
+                            payload = payloadReader.payload();
+                            break reading;
+                        }
+                        if (payloadReader.header() != null) {
+                            embeddedBytes = EmbeddingPlanes.fromHeaderFlags(payloadReader.header().flags())
+                                    .embeddableBytes(format);
+                        }
+                        if (!containerChecked) {
+                            containerChecked = checkContainerHeader(payloadReader);
                         }
+                    }
+                } // End of stream reading
+            } finally {
+                // Before ffmpeg can see its stdout closed, so the pump takes the broken pipe as expected
+                readerStopped.set(true);
+                frameBufferPool.release(frame);
+                extractorStdout.close();
+            }
 
-                        currentByte = 0;
-                        bitCount = 0;
-                    } // End of full byte check
+            if (payload != null) {
+                // No need to decode the rest of the video. The pump stops feeding ffmpeg and its stdout is closed, so
+                // it exits by itself on the broken pipe; only one that does not is killed with the group
+                if (!extractor.waitFor(EXTRACTOR_EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.debug("Extractor still running {}s after the payload was found", EXTRACTOR_EXIT_TIMEOUT_SECONDS);
+                }
+                return payload;
+            }
+            if (payloadReader.finish()) {
+                return payloadReader.payload();
+            }
+            throw new IOException("Video stream ended before the embedded payload was complete.");
+        }
 
-                } // End of buffer processing
+    }
 
-            } // End of stream reading
-            throw new IOException("Payload terminator not found in video stream.");
-        } finally {
-            extractor.destroy(); // Ensure process is terminated
+    /**
+     * Decodes the hybrid payload's own header from the first bytes extracted, so a carrier that holds something else
+     * fails here rather than after the whole payload has been decoded.
+     *
+     * @return whether the check could be made yet
+     */
+    private static boolean checkContainerHeader(PayloadReader payloadReader) throws IOException {
+        var prefix = payloadReader.framedPrefix(PayloadContainer.HEADER_LENGTH);
+        if (prefix == null) {
+            return false;
         }
-
+        try {
+            var header = PayloadContainer.readHeader(prefix);
+            if (header.totalLength() != payloadReader.header().payloadLength()) {
+                throw new HybridCryptoException(HybridCryptoException.Reason.MALFORMED_PAYLOAD, null);
+            }
+        } catch (HybridCryptoException e) {
+            throw new IOException("Embedded payload is not a hybrid payload container", e);
+        }
+        return true;
     }
 
     @Override
     public Map<String, Object> getVideoInfo(InputStream videoStream) throws IOException, InterruptedException {
 
-        var ffprobeBuilder = new ProcessBuilder(
-                "ffprobe",
-                "-v", "quiet",
-                "-print_format", "json",
-                "-show_streams",
-                "-i", "pipe:0"
-        );
-        var ffprobe = ffprobeBuilder.start();
-
-        try (var stdin = ffprobe.getOutputStream()) {
-            videoStream.transferTo(stdin);
-        }
-
-        try (InputStream stdout = ffprobe.getInputStream()) {
-            var jsonOutput = new String(stdout.readAllBytes());
-            var gson = new Gson();
-            Map<String, Object> result = gson.fromJson(jsonOutput, Map.class);
-            return (Map<String, Object>) ((List) result.get("streams")).get(0);
-        } finally {
-            ffprobe.waitFor();
-            ffprobe.destroy();
-        }
+        var probe = videoProbeService.probe(videoStream, -1);
+        var info = new LinkedHashMap<String, Object>();
+        info.put("codec_name", probe.codec());
+        info.put("pix_fmt", probe.pixFmt());
+        info.put("width", probe.width());
+        info.put("height", probe.height());
+        info.put("avg_frame_rate", probe.frameRate());
+        info.put("duration", probe.durationSeconds());
+        info.put("nb_frames", probe.frameCount());
+        return info;
     }
 
     @Override
@@ -279,42 +402,31 @@ public class SteganographyServiceImpl implements SteganographyService {
             String contentType,
             String ownerId
     ) {
-        var body = new LinkedMultiValueMap<String, Object>();
-        body.add("file", new MyInputStreamResource(fileStream));
-        body.add("filename", fileName);
-        body.add("contentType", contentType);
-        body.add("ownerUserId", ownerId);
-
-        var response = fileServiceRestClient.post()
-                .uri(FILE_SERVICE_UPLOAD_URI)
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .body(body)
-                .retrieve()
-                .body(new ParameterizedTypeReference<Map<String, String>>() {
-                });
-
-        if (response == null || response.get("fileId") == null) {
-            throw new RuntimeException("File upload to file-service failed, response was null or missing fileId.");
+        var fileService = loadBalancerClient.choose(fileServiceUrl.getHost());
+        if (fileService == null) {
+            throw new IllegalStateException("No file-service instance available.");
         }
-        return response.get("fileId");
-    }
-
-    // Custom resource class to handle streaming from an InputStream
-    private static class MyInputStreamResource extends InputStreamResource {
 
-        public MyInputStreamResource(InputStream inputStream) {
-            super(inputStream);
+        var uri = UriComponentsBuilder.fromPath(FILE_SERVICE_UPLOAD_URI)
+                .queryParam("filename", fileName);
+        if (ownerId != null) {
+            uri.queryParam("ownerUserId", ownerId);
         }
 
-        @Override
-        public String getFilename() {
-            return "stream"; // Required for multipart requests
-        }
+        // Sent as a raw body, chunked, while it is still being produced: neither side buffers or spools the file
+        var fileId = streamingRestClient.post()
+                .uri(loadBalancerClient.reconstructURI(fileService, uri.encode().build().toUri()))
+                // There is no user token on a job, so file-service takes the owner from ownerUserId on this token
+                .header(SecurityConfig.SERVICE_TOKEN_HEADER, serviceToken)
+                .contentType(MediaType.parseMediaType(contentType))
+                .body(outputStream -> fileStream.transferTo(outputStream))
+                .retrieve()
+                .body(String.class);
 
-        @Override
-        public long contentLength() {
-            return -1; // Let the stream handle its length
+        if (fileId == null || fileId.isBlank()) {
+            throw new RuntimeException("File upload to file-service failed, response was missing the fileId.");
         }
+        return fileId;
     }
 
 }
@@ -0,0 +1,155 @@
+package com.example.stego.videoprocessingservice.services.impl;
+
+import com.example.stego.videoprocessingservice.model.VideoProbe;
+import com.example.stego.videoprocessingservice.probe.CarrierHeader;
+import com.example.stego.videoprocessingservice.probe.FfprobeReport;
+import com.example.stego.videoprocessingservice.probe.ProbeCache;
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import com.example.stego.videoprocessingservice.services.VideoProbeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class VideoProbeServiceImpl implements VideoProbeService {
+
+    private final FfmpegProcessManager ffmpegProcessManager;
+    private final ProbeCache probeCache;
+
+    @Value("${pqcstego.probe.header-window-mb:8}")
+    private int headerWindowMb;
+
+    @Value("${pqcstego.probe.max-moov-mb:64}")
+    private int maxMoovMb;
+
+    @Override
+    public VideoProbe probe(
+            InputStream carrierVideoStream,
+            long contentLength
+    ) throws IOException, InterruptedException {
+
+        var header = CarrierHeader.read(
+                carrierVideoStream, contentLength, headerWindowMb * 1024 * 1024, maxMoovMb * 1024 * 1024
+        );
+
+        // Extrapolated counts depend on the total size as well as on the header
+        var extrapolated = !header.moovOnly() && !header.wholeCarrier();
+        var cacheKey = extrapolated ? header.contentHash() + ":" + contentLength : header.contentHash();
+        var cached = probeCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        var report = runFfprobe(header.probeBytes());
+        if (header.moovOnly() && report.frameCount() <= 0) {
+            // Fragmented MP4: the moov box has no sample tables, so count the packets of the window instead
+            report = runFfprobe(header.window());
+            extrapolated = true;
+        }
+
+        var probe = toVideoProbe(report, header, extrapolated, contentLength);
+        probeCache.put(cacheKey, probe);
+        log.debug("Probed carrier {}: {}", cacheKey, probe);
+        return probe;
+    }
+
+    private FfprobeReport runFfprobe(byte[] probeBytes) throws IOException, InterruptedException {
+        try (var processes = ffmpegProcessManager.open(1)) {
+            var ffprobe = processes.startWarmProbe();
+
+            try (var stdin = ffprobe.getOutputStream()) {
+                stdin.write(probeBytes);
+            } catch (IOException e) {
+                // ffprobe may stop reading once it has seen enough
+                log.debug("ffprobe closed its input early", e);
+            }
+
+            FfprobeReport report;
+            try (var stdout = new InputStreamReader(ffprobe.getInputStream(), StandardCharsets.UTF_8)) {
+                report = FfprobeReport.parse(stdout);
+            }
+            ffprobe.waitFor();
+
+            if (report == null) {
+                throw new IOException("Carrier has no video stream: " + ffprobe.stderrTail());
+            }
+            return report;
+        }
+    }
+
+    private static VideoProbe toVideoProbe(
+            FfprobeReport report,
+            CarrierHeader header,
+            boolean extrapolated,
+            long contentLength
+    ) {
+        var frameRate = usableRate(report.avgFrameRate()) ? report.avgFrameRate() : report.realFrameRate();
+        var fps = rateOf(frameRate);
+
+        long frameCount;
+        boolean exact;
+        if (!extrapolated && report.frameCount() > 0) {
+            frameCount = report.frameCount();
+            exact = true;
+        } else if (!extrapolated) {
+            frameCount = report.readPackets();
+            exact = true;
+        } else if (contentLength > header.window().length) {
+            // Assume the bitrate of the window holds for the whole carrier
+            frameCount = Math.round((double) report.readPackets() * contentLength / header.window().length);
+            exact = false;
+        } else {
+            // Unknown size: what the window holds is a lower bound
+            frameCount = report.readPackets();
+            exact = false;
+        }
+
+        double duration;
+        if (exact && report.streamDuration() > 0) {
+            duration = report.streamDuration();
+        } else if (exact && report.formatDuration() > 0) {
+            duration = report.formatDuration();
+        } else {
+            duration = fps > 0 ? frameCount / fps : 0;
+        }
+
+        return new VideoProbe(
+                report.formatName(),
+                report.codec(),
+                report.pixFmt(),
+                report.width(),
+                report.height(),
+                frameRate,
+                duration,
+                frameCount,
+                exact
+        );
+    }
+
+    private static boolean usableRate(String rate) {
+        return rate != null && rateOf(rate) > 0;
+    }
+
+    private static double rateOf(String rate) {
+        if (rate == null) {
+            return 0;
+        }
+        var parts = rate.split("/");
+        try {
+            double numerator = Double.parseDouble(parts[0]);
+            double denominator = parts.length > 1 ? Double.parseDouble(parts[1]) : 1;
+            return denominator == 0 ? 0 : numerator / denominator;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
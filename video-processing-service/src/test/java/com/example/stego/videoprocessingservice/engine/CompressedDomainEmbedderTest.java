@@ -0,0 +1,173 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import com.example.stego.videoprocessingservice.process.FfmpegProcessManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Splices real carriers, so it only runs where ffmpeg and ffprobe are on the PATH.
+ */
+class CompressedDomainEmbedderTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 100;
+    private static final int KEYFRAME_INTERVAL = 25;
+
+    @TempDir
+    Path directory;
+
+    private FfmpegProcessManager ffmpegProcessManager;
+    private ParallelFrameEmbedder parallelFrameEmbedder;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ffmpegAvailable(), "ffmpeg is not installed");
+        ffmpegProcessManager = new FfmpegProcessManager(4, Duration.ofMinutes(1), 20, 0);
+        parallelFrameEmbedder = new ParallelFrameEmbedder(2, 4, new FrameBufferPool(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ffmpegProcessManager != null) {
+            parallelFrameEmbedder.close();
+            ffmpegProcessManager.close();
+        }
+    }
+
+    @Test
+    void payloadSurvivesSpliceAndAudioIsKept() throws Exception {
+        var carrier = carrier();
+        // A few frames' worth, so the cut lands on the second keyframe and a copied tail follows
+        var payload = new byte[3 * frameSize() / 8];
+        new Random(42).nextBytes(payload);
+
+        var stego = directory.resolve("stego.ts");
+        try (var carrierStream = Files.newInputStream(carrier);
+             var output = Files.newOutputStream(stego);
+             var source = new PayloadSource(new ByteArrayInputStream(payload), payload.length)) {
+            new CompressedDomainEmbedder(parallelFrameEmbedder, ffmpegProcessManager)
+                    .embed(carrierStream, source, EmbeddingPlanes.ALL, output, null);
+        }
+
+        var frames = run("ffmpeg", "-v", "error", "-i", stego.toString(),
+                "-map", "0:v:0", "-f", "rawvideo", "-pix_fmt", RawVideoFormat.PIX_FMT, "pipe:1");
+        assertEquals(FRAMES, frames.length / frameSize());
+        assertArrayEquals(payload, extract(frames));
+
+        var streamTypes = new String(run("ffprobe", "-v", "error", "-show_entries", "stream=codec_type",
+                "-of", "csv=p=0", stego.toString()), StandardCharsets.UTF_8);
+        assertEquals(List.of("video", "audio"), streamTypes.lines().map(String::strip).toList());
+    }
+
+    @Test
+    void payloadSurvivesWhenCarrierHasNoAudio() throws Exception {
+        var carrier = directory.resolve("silent.mp4");
+        run("ffmpeg", "-v", "error", "-f", "lavfi", "-i", testSource(), "-frames:v", String.valueOf(FRAMES),
+                "-c:v", "libx264", "-g", String.valueOf(KEYFRAME_INTERVAL), "-pix_fmt", RawVideoFormat.PIX_FMT,
+                "-y", carrier.toString());
+        var payload = "short payload".getBytes(StandardCharsets.US_ASCII);
+
+        var stego = directory.resolve("stego.ts");
+        try (var carrierStream = Files.newInputStream(carrier);
+             var output = Files.newOutputStream(stego);
+             var source = new PayloadSource(new ByteArrayInputStream(payload), payload.length)) {
+            new CompressedDomainEmbedder(parallelFrameEmbedder, ffmpegProcessManager)
+                    .embed(carrierStream, source, EmbeddingPlanes.LUMA, output, null);
+        }
+
+        var frames = run("ffmpeg", "-v", "error", "-i", stego.toString(),
+                "-f", "rawvideo", "-pix_fmt", RawVideoFormat.PIX_FMT, "pipe:1");
+        assertEquals(FRAMES, frames.length / frameSize());
+        assertArrayEquals(payload, extract(frames));
+    }
+
+    private Path carrier() throws IOException, InterruptedException {
+        var carrier = directory.resolve("carrier.mp4");
+        run("ffmpeg", "-v", "error",
+                "-f", "lavfi", "-i", testSource(),
+                "-f", "lavfi", "-i", "sine=frequency=440:sample_rate=48000",
+                "-frames:v", String.valueOf(FRAMES), "-shortest",
+                "-c:v", "libx264", "-g", String.valueOf(KEYFRAME_INTERVAL), "-pix_fmt", RawVideoFormat.PIX_FMT,
+                "-c:a", "aac",
+                "-y", carrier.toString());
+        return carrier;
+    }
+
+    private static String testSource() {
+        return "testsrc=size=" + WIDTH + "x" + HEIGHT + ":rate=25";
+    }
+
+    /**
+     * Reads the payload back the way the extract job does: LSBs of each frame, header first.
+     */
+    private static byte[] extract(byte[] frames) throws IOException {
+        var reader = new PayloadReader("PQCSTEGO_END".getBytes(StandardCharsets.US_ASCII));
+        var collector = new LsbBitCollector();
+        var decoded = new byte[frameSize() / 8 + 1];
+        var format = new RawVideoFormat(WIDTH, HEIGHT, "25");
+
+        for (int offset = 0; offset + frameSize() <= frames.length; offset += frameSize()) {
+            var frame = ByteBuffer.wrap(frames, offset, frameSize()).slice();
+            int embedded = frameSize();
+            int position = 0;
+            while (position < embedded) {
+                int length = Math.min(reader.headerRead() ? 4096 : StegoHeader.LENGTH * 8, embedded - position);
+                int count = collector.extract(frame, position, length, decoded);
+                position += length;
+                if (reader.accept(decoded, 0, count)) {
+                    return reader.payload();
+                }
+                if (reader.header() != null) {
+                    embedded = EmbeddingPlanes.fromHeaderFlags(reader.header().flags()).embeddableBytes(format);
+                }
+            }
+        }
+        assertTrue(reader.finish(), "payload incomplete");
+        return reader.payload();
+    }
+
+    private static int frameSize() {
+        return new RawVideoFormat(WIDTH, HEIGHT, "25").frameSize();
+    }
+
+    private static byte[] run(String... command) throws IOException, InterruptedException {
+        var process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        process.getOutputStream().close();
+        var stdout = process.getInputStream().readAllBytes();
+        assertEquals(0, process.waitFor(), String.join(" ", command) + " failed");
+        return stdout;
+    }
+
+    private static boolean ffmpegAvailable() {
+        try {
+            return new ProcessBuilder("ffmpeg", "-version").redirectErrorStream(true).start().waitFor() == 0
+                    && new ProcessBuilder("ffprobe", "-version").redirectErrorStream(true).start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
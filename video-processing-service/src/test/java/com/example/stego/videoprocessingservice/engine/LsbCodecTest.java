@@ -0,0 +1,163 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the word-at-a-time paths against a plain bit-by-bit implementation of the same layout.
+ */
+class LsbCodecTest {
+
+    private static final byte[] ALL_BYTE_VALUES = new byte[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            ALL_BYTE_VALUES[b] = (byte) b;
+        }
+    }
+
+    private final Random random = new Random(7);
+
+    @Test
+    void embedsEveryByteValueLikeReference() {
+        var carrier = randomBytes(ALL_BYTE_VALUES.length * 8);
+        var expected = carrier.clone();
+        var buffer = ByteBuffer.wrap(carrier);
+
+        int written = LsbCodec.embed(buffer, 0, carrier.length, ALL_BYTE_VALUES, 0);
+
+        assertEquals(referenceEmbed(expected, 0, expected.length, ALL_BYTE_VALUES, 0), written);
+        assertArrayEquals(expected, carrier);
+    }
+
+    @Test
+    void embedsFromUnalignedCarrierOffsetsAndBitOffsets() {
+        // Carrier offsets off the 8-byte grid, payload cursors mid-byte and lengths that end mid-byte, so the head,
+        // body and tail loops all take part in different proportions
+        for (int offset = 0; offset < 8; offset++) {
+            for (long bitOffset = 0; bitOffset < 17; bitOffset++) {
+                for (int length : new int[]{0, 1, 7, 8, 9, 63, 64, 65, 300}) {
+                    var carrier = randomBytes(offset + length + 16);
+                    var expected = carrier.clone();
+
+                    int written = LsbCodec.embed(ByteBuffer.wrap(carrier), offset, length, ALL_BYTE_VALUES, bitOffset);
+
+                    var context = "offset " + offset + ", bit offset " + bitOffset + ", length " + length;
+                    assertEquals(referenceEmbed(expected, offset, length, ALL_BYTE_VALUES, bitOffset), written, context);
+                    assertArrayEquals(expected, carrier, context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void stopsAtEndOfPayloadMidWord() {
+        // 13 bits left: one full payload byte via the body loop, then five bits via the tail, then nothing
+        var payload = new byte[]{(byte) 0xA5, (byte) 0x3C};
+        var carrier = randomBytes(40);
+        var expected = carrier.clone();
+
+        int written = LsbCodec.embed(ByteBuffer.wrap(carrier), 1, 39, payload, 3);
+
+        assertEquals(13, written);
+        assertEquals(13, referenceEmbed(expected, 1, 39, payload, 3));
+        assertArrayEquals(expected, carrier);
+        assertEquals(0, LsbCodec.embed(ByteBuffer.wrap(carrier), 0, 8, payload, 16));
+    }
+
+    @Test
+    void embedsIntoDirectBufferWithoutMovingIt() {
+        var carrier = randomBytes(3 + ALL_BYTE_VALUES.length * 8);
+        var expected = carrier.clone();
+        var buffer = ByteBuffer.allocateDirect(carrier.length).put(carrier).position(5);
+
+        LsbCodec.embed(buffer, 3, ALL_BYTE_VALUES.length * 8, ALL_BYTE_VALUES, 0);
+        referenceEmbed(expected, 3, ALL_BYTE_VALUES.length * 8, ALL_BYTE_VALUES, 0);
+
+        assertEquals(5, buffer.position());
+        assertEquals(carrier.length, buffer.limit());
+        var actual = new byte[carrier.length];
+        buffer.get(0, actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void extractsEveryByteValueLikeReference() {
+        for (int offset = 0; offset < 8; offset++) {
+            var carrier = randomBytes(offset + ALL_BYTE_VALUES.length * 8);
+            referenceEmbed(carrier, offset, ALL_BYTE_VALUES.length * 8, ALL_BYTE_VALUES, 0);
+            var out = new byte[ALL_BYTE_VALUES.length + 2];
+
+            int count = LsbCodec.extract(ByteBuffer.wrap(carrier), offset, ALL_BYTE_VALUES.length * 8, out, 2);
+
+            assertEquals(ALL_BYTE_VALUES.length, count);
+            var extracted = new byte[count];
+            System.arraycopy(out, 2, extracted, 0, count);
+            assertArrayEquals(ALL_BYTE_VALUES, extracted, "offset " + offset);
+        }
+    }
+
+    @Test
+    void extractIgnoresPartialTrailingWord() {
+        var carrier = randomBytes(8 * 3 + 5);
+        var out = new byte[4];
+
+        int count = LsbCodec.extract(ByteBuffer.wrap(carrier), 0, carrier.length, out, 0);
+
+        assertEquals(3, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(referenceExtract(carrier, i * 8), out[i], "byte " + i);
+        }
+        assertEquals(0, out[3]);
+    }
+
+    @Test
+    void roundTripsAcrossUnalignedSplits() {
+        // As the embedders do: one payload spread over several carrier ranges that do not end on payload bytes
+        var payload = randomBytes(97);
+        var carrier = randomBytes(payload.length * 8 + 3);
+        var buffer = ByteBuffer.wrap(carrier);
+        long bit = 0;
+        int pos = 3;
+        for (int length : new int[]{5, 11, 64, 3, 700}) {
+            int written = LsbCodec.embed(buffer, pos, length, payload, bit);
+            bit += written;
+            pos += written;
+        }
+        assertEquals(payload.length * 8L, bit);
+
+        var out = new byte[payload.length];
+        LsbCodec.extract(buffer, 3, payload.length * 8, out, 0);
+        assertArrayEquals(payload, out);
+    }
+
+    private static int referenceEmbed(byte[] carrier, int offset, int length, byte[] payload, long bitOffset) {
+        int bits = (int) Math.max(0, Math.min(length, payload.length * 8L - bitOffset));
+        for (int i = 0; i < bits; i++) {
+            long bit = bitOffset + i;
+            int value = (payload[(int) (bit / 8)] >> (7 - (int) (bit % 8))) & 1;
+            carrier[offset + i] = (byte) ((carrier[offset + i] & ~1) | value);
+        }
+        return bits;
+    }
+
+    private static byte referenceExtract(byte[] carrier, int offset) {
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 1) | (carrier[offset + i] & 1);
+        }
+        return (byte) value;
+    }
+
+    private byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
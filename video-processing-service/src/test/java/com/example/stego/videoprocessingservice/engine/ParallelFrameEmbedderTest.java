@@ -0,0 +1,195 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelFrameEmbedderTest {
+
+    // Large enough that embedding a frame takes a while next to a frame that needs none
+    private static final int FRAME_SIZE = 1 << 18;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool(Long.MAX_VALUE);
+    private final ParallelFrameEmbedder embedder = new ParallelFrameEmbedder(4, 6, frameBufferPool);
+
+    @AfterEach
+    void tearDown() {
+        embedder.close();
+    }
+
+    @Test
+    void writesFramesInOrderWhenLaterFramesFinishFirst() throws Exception {
+        // The payload covers the first frames only: the frames after it need no embedding and are done at once,
+        // while the workers are still busy with the ones before them
+        int frameCount = 24;
+        var payload = new byte[FRAME_SIZE / 8 * 2 + 1_000];
+        new Random(5).nextBytes(payload);
+        var output = new ByteArrayOutputStream();
+
+        assertTimeoutPreemptively(TIMEOUT, () -> embed(frameCount, payload, output));
+
+        var stego = output.toByteArray();
+        assertEquals(frameCount * FRAME_SIZE, stego.length);
+        for (int frame = 0; frame < frameCount; frame++) {
+            assertFrameContent(stego, frame);
+        }
+        assertArrayEquals(framed(payload), extract(stego, framed(payload).length));
+    }
+
+    @Test
+    void failingWriterFailsEmbeddingWithoutHanging() {
+        // Far more frames than buffers, so the reader would block on backpressure if the failure were missed
+        var payload = new byte[FRAME_SIZE / 8 * 40];
+        var framesWritten = new AtomicInteger();
+        var output = new OutputStream() {
+            private long written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (written + len > 3L * FRAME_SIZE) {
+                    throw new IOException("disk full");
+                }
+                written += len;
+                framesWritten.set((int) (written / FRAME_SIZE));
+            }
+        };
+
+        var carrier = new CountingInputStream(carrier(100));
+
+        var e = assertTimeoutPreemptively(TIMEOUT,
+                () -> assertThrows(IOException.class, () -> embed(carrier, payload, output)));
+
+        assertEquals("disk full", e.getMessage());
+        assertEquals(3, framesWritten.get());
+        // The reader stops soon after the writer fails instead of running through the rest of the carrier
+        assertTrue(carrier.count() < 20L * FRAME_SIZE, "read " + carrier.count() / FRAME_SIZE + " frames");
+        assertBuffersReturned();
+    }
+
+    @Test
+    void writerFailingWithRuntimeExceptionIsReported() {
+        var output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                throw new IllegalStateException("broken pipe");
+            }
+        };
+
+        var e = assertTimeoutPreemptively(TIMEOUT,
+                () -> assertThrows(IOException.class, () -> embed(50, new byte[1_000], output)));
+
+        assertTrue(e.getCause() instanceof IllegalStateException, String.valueOf(e.getCause()));
+        assertBuffersReturned();
+    }
+
+    @Test
+    void carrierWithTooFewFramesFails() {
+        var payload = new byte[FRAME_SIZE / 8 * 3];
+
+        var e = assertThrows(IOException.class, () -> embed(2, payload, OutputStream.nullOutputStream()));
+
+        assertTrue(e.getMessage().contains("not embedded"), e.getMessage());
+        assertBuffersReturned();
+    }
+
+    private void embed(int frameCount, byte[] payload, OutputStream output) throws IOException, InterruptedException {
+        embed(new ByteArrayInputStream(carrier(frameCount)), payload, output);
+    }
+
+    private void embed(InputStream carrier, byte[] payload, OutputStream output) throws IOException, InterruptedException {
+        var frames = new RawFrameReader(carrier, FRAME_SIZE, null);
+        var source = new PayloadSource(new ByteArrayInputStream(payload), payload.length);
+        embedder.embed(frames, source.framed(0), output, FRAME_SIZE);
+    }
+
+    private void assertBuffersReturned() {
+        // Every buffer the job took is back in the pool once embed returns, and none is still being written to
+        long retained = frameBufferPool.retainedBytes();
+        assertTrue(retained > 0 && retained % FRAME_SIZE == 0 && retained <= 6L * FRAME_SIZE, "retained " + retained);
+    }
+
+    /**
+     * Frame {@code k} is filled with {@code 2k} above the LSBs, so a frame written out of place is recognisable.
+     */
+    private static byte[] carrier(int frameCount) {
+        var carrier = new byte[frameCount * FRAME_SIZE];
+        for (int frame = 0; frame < frameCount; frame++) {
+            Arrays.fill(carrier, frame * FRAME_SIZE, (frame + 1) * FRAME_SIZE, (byte) (frame << 1));
+        }
+        return carrier;
+    }
+
+    private static void assertFrameContent(byte[] stego, int frame) {
+        for (int i = frame * FRAME_SIZE; i < (frame + 1) * FRAME_SIZE; i++) {
+            if ((stego[i] & 0xFE) != ((frame << 1) & 0xFE)) {
+                throw new AssertionError("byte " + i + " does not belong to frame " + frame);
+            }
+        }
+    }
+
+    private static byte[] framed(byte[] payload) {
+        var header = StegoHeader.forPayload(payload.length, 0).toBytes();
+        var framed = Arrays.copyOf(header, header.length + payload.length);
+        System.arraycopy(payload, 0, framed, header.length, payload.length);
+        return framed;
+    }
+
+    private static byte[] extract(byte[] stego, int length) {
+        var out = new byte[length];
+        LsbCodec.extract(ByteBuffer.wrap(stego), 0, length * 8, out, 0);
+        return out;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count = new AtomicLong();
+
+        CountingInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+
+        long count() {
+            return count.get();
+        }
+
+    }
+
+}
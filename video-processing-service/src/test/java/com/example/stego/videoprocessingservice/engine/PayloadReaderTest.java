@@ -0,0 +1,83 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadReaderTest {
+
+    private static final byte[] TERMINATOR = "PQCSTEGO_END".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void readsFramedPayloadFedInPieces() throws IOException {
+        var payload = new byte[200_000];
+        Arrays.fill(payload, (byte) 0x5A);
+        var framed = framed(StegoHeader.forPayload(payload.length, 0), payload);
+        var reader = new PayloadReader(TERMINATOR);
+
+        boolean complete = false;
+        for (int offset = 0; offset < framed.length && !complete; offset += 7_001) {
+            complete = reader.accept(framed, offset, Math.min(7_001, framed.length - offset));
+        }
+
+        assertTrue(complete);
+        assertArrayEquals(payload, reader.payload());
+    }
+
+    @Test
+    void readsEmptyFramedPayload() throws IOException {
+        var reader = new PayloadReader(TERMINATOR);
+        var header = StegoHeader.forPayload(0, 0).toBytes();
+
+        assertTrue(reader.accept(header, 0, header.length));
+        assertArrayEquals(new byte[0], reader.payload());
+    }
+
+    @Test
+    void forgedOversizedLengthDoesNotAllocateUpFront() throws IOException {
+        // A valid CRC is trivial to compute, so the declared length alone must not size the buffer
+        var forged = framed(StegoHeader.forPayload(Integer.MAX_VALUE - 8, 0), new byte[1_000]);
+        var reader = new PayloadReader(TERMINATOR);
+
+        assertFalse(reader.accept(forged, 0, forged.length));
+        assertTrue(reader.framedCapacity() <= 64 * 1024);
+        // The carrier ends long before the declared length
+        assertFalse(reader.finish());
+    }
+
+    @Test
+    void rejectsLengthBeyondArrayLimit() {
+        var header = StegoHeader.forPayload(Integer.MAX_VALUE, 0).toBytes();
+        var reader = new PayloadReader(TERMINATOR);
+
+        assertThrows(IOException.class, () -> reader.accept(header, 0, header.length));
+    }
+
+    @Test
+    void readsLegacyPayloadUpToTerminator() throws IOException {
+        var payload = "legacy payload without a header".getBytes(StandardCharsets.US_ASCII);
+        var stream = framed(payload, TERMINATOR);
+        var reader = new PayloadReader(TERMINATOR);
+
+        assertTrue(reader.accept(stream, 0, stream.length));
+        assertArrayEquals(payload, reader.payload());
+    }
+
+    private static byte[] framed(StegoHeader header, byte[] payload) {
+        return framed(header.toBytes(), payload);
+    }
+
+    private static byte[] framed(byte[] first, byte[] second) {
+        var bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StegoHeaderTest {
+
+    @Test
+    void roundTripsThroughBytes() {
+        var header = StegoHeader.forPayload(123_456_789L, StegoHeader.FLAG_LUMA_ONLY);
+
+        var bytes = header.toBytes();
+
+        assertEquals(StegoHeader.LENGTH, bytes.length);
+        assertEquals(header, StegoHeader.parse(bytes).orElseThrow());
+    }
+
+    @Test
+    void parsesHeaderFollowedByPayloadBytes() {
+        var header = StegoHeader.forPayload(4, 0);
+        var bytes = Arrays.copyOf(header.toBytes(), StegoHeader.LENGTH + 4);
+
+        assertEquals(header, StegoHeader.parse(bytes).orElseThrow());
+    }
+
+    @Test
+    void rejectsCrcMismatch() {
+        var bytes = StegoHeader.forPayload(1024, 0).toBytes();
+        bytes[9] ^= 0x01; // a bit of the payload length
+
+        assertTrue(StegoHeader.parse(bytes).isEmpty());
+    }
+
+    @Test
+    void rejectsCorruptedCrc() {
+        var bytes = StegoHeader.forPayload(1024, 0).toBytes();
+        bytes[StegoHeader.LENGTH - 1] ^= 0x01;
+
+        assertTrue(StegoHeader.parse(bytes).isEmpty());
+    }
+
+    @Test
+    void rejectsWrongMagic() {
+        var bytes = StegoHeader.forPayload(1024, 0).toBytes();
+        bytes[0] = 'X';
+
+        assertTrue(StegoHeader.parse(bytes).isEmpty());
+    }
+
+    @Test
+    void rejectsShortBuffer() {
+        var bytes = StegoHeader.forPayload(1024, 0).toBytes();
+
+        assertTrue(StegoHeader.parse(Arrays.copyOf(bytes, StegoHeader.LENGTH - 1)).isEmpty());
+        assertTrue(StegoHeader.parse(new byte[0]).isEmpty());
+    }
+
+    @Test
+    void rejectsUnsupportedVersion() {
+        var bytes = new StegoHeader(StegoHeader.CURRENT_VERSION + 1, 0, 1024).toBytes();
+
+        assertTrue(StegoHeader.parse(bytes).isEmpty());
+    }
+
+    @Test
+    void rejectsNegativeLength() {
+        var bytes = new StegoHeader(StegoHeader.CURRENT_VERSION, 0, -1).toBytes();
+
+        assertTrue(StegoHeader.parse(bytes).isEmpty());
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.example.stego.videoprocessingservice.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerminatorMatcherTest {
+
+    private static final byte[] TERMINATOR = "PQCSTEGO_END".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void matchesTerminatorSplitAtEveryPosition() throws IOException {
+        // The extractor hands PayloadReader whatever each LSB word yielded, so the terminator can straddle any pair
+        // of chunks; the matcher has to carry its state across them
+        var payload = "legacy payload".getBytes(StandardCharsets.US_ASCII);
+        var stream = concat(payload, TERMINATOR);
+
+        for (int split = 1; split < stream.length; split++) {
+            var reader = new PayloadReader(TERMINATOR);
+
+            boolean complete = reader.accept(stream, 0, split) || reader.accept(stream, split, stream.length - split);
+
+            assertTrue(complete, "split at " + split);
+            assertArrayEquals(payload, reader.payload(), "split at " + split);
+        }
+    }
+
+    @Test
+    void matchesAfterPartialMatchThatFallsBack() {
+        // "PQCSTEGO_EN" then a mismatch, then the real terminator: the partial match must not swallow its start
+        var stream = ascii("PQCSTEGO_ENPQCSTEGO_END");
+
+        assertEquals(List.of(stream.length), matchEnds(TERMINATOR, stream));
+    }
+
+    @Test
+    void matchesSelfOverlappingPatterns() {
+        assertEquals(List.of(4), matchEnds(ascii("AAB"), ascii("AAAB")));
+        assertEquals(List.of(4, 6), matchEnds(ascii("ABAB"), ascii("ABABAB")));
+        assertEquals(List.of(3, 4, 5), matchEnds(ascii("AAA"), ascii("AAAAA")));
+        assertEquals(List.of(12), matchEnds(ascii("ABACABAB"), ascii("ABACABACABAB")));
+        // The border of a border: after the first match only "AB" carries over, not "ABAB"
+        assertEquals(List.of(8, 14), matchEnds(ascii("ABACABAB"), ascii("ABACABABACABAB")));
+    }
+
+    @Test
+    void reportsNoMatchWithoutTerminator() {
+        var stream = new byte[10_000];
+        new Random(3).nextBytes(stream);
+        // Every byte of the terminator but the last, so partial matches keep starting and breaking off
+        for (int i = 0; i + TERMINATOR.length <= stream.length; i += 97) {
+            System.arraycopy(TERMINATOR, 0, stream, i, TERMINATOR.length - 1);
+            stream[i + TERMINATOR.length - 1] = 'X';
+        }
+
+        assertEquals(List.of(), matchEnds(TERMINATOR, stream));
+    }
+
+    @Test
+    void agreesWithNaiveSuffixCheck() {
+        // A two-letter alphabet makes overlaps and fall-backs frequent
+        var random = new Random(11);
+        for (int round = 0; round < 500; round++) {
+            var pattern = randomAb(random, 1 + random.nextInt(10));
+            var stream = randomAb(random, 200);
+
+            var expected = new ArrayList<Integer>();
+            for (int end = pattern.length; end <= stream.length; end++) {
+                if (Arrays.equals(stream, end - pattern.length, end, pattern, 0, pattern.length)) {
+                    expected.add(end);
+                }
+            }
+            assertEquals(expected, matchEnds(pattern, stream), new String(pattern, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void rejectsEmptyTerminator() {
+        assertThrows(IllegalArgumentException.class, () -> new TerminatorMatcher(new byte[0]));
+    }
+
+    /**
+     * @return the stream lengths after which the matcher reported the terminator
+     */
+    private static List<Integer> matchEnds(byte[] pattern, byte[] stream) {
+        var matcher = new TerminatorMatcher(pattern);
+        var ends = new ArrayList<Integer>();
+        for (int i = 0; i < stream.length; i++) {
+            if (matcher.accept(stream[i])) {
+                ends.add(i + 1);
+            }
+        }
+        return ends;
+    }
+
+    private static byte[] randomAb(Random random, int length) {
+        var bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (random.nextBoolean() ? 'A' : 'B');
+        }
+        return bytes;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        var bytes = new byte[0];
+        for (var part : parts) {
+            int length = bytes.length;
+            bytes = Arrays.copyOf(bytes, length + part.length);
+            System.arraycopy(part, 0, bytes, length, part.length);
+        }
+        return bytes;
+    }
+
+}